@@ -2,14 +2,17 @@ package com.docwhisperer.backend;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 /**
  * The main entry point for the Doc-Whisperer Backend application.
  * <p>
  * This class triggers the Spring Boot auto-configuration and component scanning.
  * It initializes the web server (Tomcat), sets up the application context,
  * and loads all defined beans (controllers, services, repositories).
+ * Scheduling is enabled for background maintenance jobs (e.g. the orphan embedding sweeper).
  * </p>
  */
 public class BackendApplication {
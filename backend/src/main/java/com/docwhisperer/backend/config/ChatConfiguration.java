@@ -1,12 +1,21 @@
 package com.docwhisperer.backend.config;
 
-import dev.langchain4j.data.segment.TextSegment;
+import com.docwhisperer.backend.llm.ChatModelPool;
+import com.docwhisperer.backend.llm.LazyEmbeddingModel;
+import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.embedding.AllMiniLmL6V2EmbeddingModel;
 import dev.langchain4j.model.embedding.EmbeddingModel;
-import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.pgvector.PgVectorEmbeddingStore;
+import dev.langchain4j.model.ollama.OllamaChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.List;
 
 @Configuration
 /**
@@ -15,8 +24,11 @@ import org.springframework.context.annotation.Configuration;
  * This class defines the necessary Spring beans to set up LangChain4j, including:
  * <ul>
  *     <li>{@link EmbeddingModel}: Converts text into vector embeddings.</li>
- *     <li>{@link EmbeddingStore}: Stores and retrieves vector embeddings (PostgreSQL).</li>
+ *     <li>{@link ChatModelPool}: Optional pool of Ollama backends, used instead of the single
+ *     auto-configured chat model when {@code docwhisperer.llm.pool.endpoints} is set.</li>
  * </ul>
+ * Embeddings are not stored through a LangChain4j {@code EmbeddingStore}: the 'embeddings' table is partitioned
+ * by collection, so it is written and queried with plain JDBC (see {@code EmbeddingRepository}).
  * </p>
  */
 public class ChatConfiguration {
@@ -25,31 +37,50 @@ public class ChatConfiguration {
      * Creates an EmbeddingModel bean using the "AllMiniLmL6V2" model.
      * This model is used to compute vector embeddings for both document chunks and user queries.
      * It runs locally within the Java process (ONNX runtime).
+     * The model is loaded lazily, on first use (normally by the startup warm-up), so it does not hold up
+     * context startup.
      *
      * @return The configured EmbeddingModel.
      */
     @Bean
     EmbeddingModel embeddingModel() {
-        return new AllMiniLmL6V2EmbeddingModel();
+        return new LazyEmbeddingModel(AllMiniLmL6V2EmbeddingModel::new);
     }
 
     /**
-     * Creates the Vector Store bean connected to PostgreSQL (pgvector).
+     * Creates a pooled ChatLanguageModel spreading requests over several Ollama instances.
      * <p>
-     * CRITICAL: We must explicitly configure the host and PORT (5433) because
-     * the auto-configuration defaults to 5432, but our Docker container is mapped to 5433.
+     * Only active when {@code docwhisperer.llm.pool.endpoints} lists the base URLs (comma-separated).
+     * Every backend uses the model name and timeout of the regular {@code langchain4j.ollama.chat-model.*} settings.
+     * Marked {@link Primary} so it wins over the single auto-configured Ollama model.
+     * Retries inside a backend are disabled; failover to another backend is done by the pool.
      * </p>
      */
-    @Bean
-    EmbeddingStore<TextSegment> embeddingStore() {
-        return PgVectorEmbeddingStore.builder()
-                .host("localhost")
-                .port(5433)
-                .database("docwhisperer")
-                .user("postgres")
-                .password("password")
-                .table("embeddings")
-                .dimension(384)
-                .build();
+    @Bean(destroyMethod = "close")
+    @Primary
+    @ConditionalOnProperty(prefix = "docwhisperer.llm.pool", name = "endpoints")
+    ChatModelPool chatModelPool(
+            @Value("${docwhisperer.llm.pool.endpoints}") List<String> endpoints,
+            @Value("${langchain4j.ollama.chat-model.model-name}") String modelName,
+            @Value("${langchain4j.ollama.chat-model.timeout:PT120S}") Duration timeout,
+            @Value("${docwhisperer.llm.pool.max-attempts:2}") int maxAttempts,
+            @Value("${docwhisperer.llm.pool.failure-threshold:3}") int failureThreshold,
+            @Value("${docwhisperer.llm.pool.open-duration:PT30S}") Duration openDuration,
+            @Value("${docwhisperer.llm.pool.health-check-interval:PT10S}") Duration healthCheckInterval,
+            MeterRegistry meterRegistry) {
+        List<ChatModelPool.Backend> backends = endpoints.stream()
+                .map(String::trim)
+                .filter(endpoint -> !endpoint.isEmpty())
+                .map(endpoint -> new ChatModelPool.Backend(
+                        URI.create(endpoint).getAuthority(),
+                        URI.create(endpoint),
+                        OllamaChatModel.builder()
+                                .baseUrl(endpoint)
+                                .modelName(modelName)
+                                .timeout(timeout)
+                                .maxRetries(1)
+                                .build()))
+                .toList();
+        return new ChatModelPool(backends, meterRegistry, maxAttempts, failureThreshold, openDuration, healthCheckInterval);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,80 @@
+package com.docwhisperer.backend.config;
+
+import com.docwhisperer.backend.observability.PipelineObservations;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+/**
+ * Thread pools used for background work outside the request threads.
+ * <p>
+ * Every pool is registered through {@link PipelineObservations#monitor}, so its queue depth,
+ * active threads and task timings show up as {@code executor.*} meters tagged with the pool name.
+ * </p>
+ */
+public class ExecutorConfiguration {
+
+    /**
+     * Pool that parses and splits the files of batch uploads in parallel.
+     * Defaults to one thread per CPU core, since Tika parsing is CPU bound.
+     */
+    @Bean(destroyMethod = "shutdown")
+    ExecutorService ingestParseExecutor(
+            @Value("${docwhisperer.ingest.batch.parse-threads:0}") int parseThreads,
+            PipelineObservations observations) {
+        int threads = parseThreads > 0 ? parseThreads : Runtime.getRuntime().availableProcessors();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), daemonThreads("ingest-parse-"));
+        return observations.monitor(executor, "ingest-parse");
+    }
+
+    /**
+     * Pool running the coordinators of batch uploads (one thread per batch in progress).
+     * Batches beyond the queue capacity are rejected instead of piling up.
+     */
+    @Bean(destroyMethod = "shutdown")
+    ExecutorService ingestBatchExecutor(
+            @Value("${docwhisperer.ingest.batch.max-concurrent-batches:2}") int maxConcurrentBatches,
+            @Value("${docwhisperer.ingest.batch.queue-capacity:8}") int queueCapacity,
+            PipelineObservations observations) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxConcurrentBatches, maxConcurrentBatches, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), daemonThreads("ingest-batch-"));
+        return observations.monitor(executor, "ingest-batch");
+    }
+
+    /**
+     * Pool generating document summaries after ingestion: one low-priority thread, so summaries are built one
+     * document at a time and never compete with request threads for CPU. Documents beyond the queue capacity
+     * are rejected and picked up later by the summary backfill.
+     */
+    @Bean(destroyMethod = "shutdown")
+    ExecutorService summaryExecutor(
+            @Value("${docwhisperer.summaries.queue-capacity:1000}") int queueCapacity,
+            PipelineObservations observations) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(queueCapacity), daemonThreads("summary-", Thread.MIN_PRIORITY));
+        return observations.monitor(executor, "summary");
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        return daemonThreads(prefix, Thread.NORM_PRIORITY);
+    }
+
+    private static ThreadFactory daemonThreads(String prefix, int priority) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(priority);
+            return thread;
+        };
+    }
+}
@@ -10,6 +10,7 @@ What it will do:
   - Calls chatAgent.answer(question) .
   - Returns the AI's response string. */
 
+import com.docwhisperer.backend.services.ChatAnswer;
 import com.docwhisperer.backend.services.ChatService;
 import org.springframework.web.bind.annotation.*;
 
@@ -42,22 +43,30 @@ public class ChatController {
      * <p>
      * This endpoint receives a user's question, sends it to the RAG pipeline (ChatService),
      * and returns the AI's response.
+     * The conversation is kept server-side: send back the returned "sessionId" with the next
+     * question to continue it, or omit it to start a new one.
      * </p>
      *
-     * @param payload A map containing the "question" key and optional "documentId".
-     * @return A map containing the "answer" key with the AI's response.
+     * @param payload A map containing the "question" key and optional "collection" (tenant, defaults to "default"),
+     *                "documentId" and "sessionId".
+     * @return A map containing the "answer" key with the AI's response, the "sessionId" of the conversation and the
+     * "sources" the answer was based on (documentId, documentName, page, score, excerpt), for citations.
      * @throws IllegalArgumentException if the question is missing or empty.
      */
     @PostMapping
-    public Map<String, String> chat(@RequestBody Map<String, String> payload) {
+    public Map<String, Object> chat(@RequestBody Map<String, String> payload) {
         String question = payload.get("question");
         if (question == null || question.trim().isEmpty()) {
              throw new IllegalArgumentException("Question cannot be empty");
         }
         
         String documentId = payload.get("documentId");
+        String sessionId = payload.get("sessionId");
+        if (sessionId != null && sessionId.length() > 64) {
+            throw new IllegalArgumentException("Invalid sessionId");
+        }
         
-        String answer = chatService.answer(question, documentId);
-        return Map.of("answer", answer);
+        ChatAnswer answer = chatService.answer(question, payload.get("collection"), documentId, sessionId);
+        return Map.of("answer", answer.answer(), "sessionId", answer.sessionId(), "sources", answer.sources());
     }
 }
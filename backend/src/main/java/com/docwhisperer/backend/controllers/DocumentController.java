@@ -1,12 +1,26 @@
 package com.docwhisperer.backend.controllers;
 
 import com.docwhisperer.backend.documents.Document;
+import com.docwhisperer.backend.documents.DocumentSummary;
+import com.docwhisperer.backend.repositories.EmbeddingPartitions;
+import com.docwhisperer.backend.services.BatchIngestionService;
+import com.docwhisperer.backend.services.DocumentPage;
+import com.docwhisperer.backend.services.DocumentSummarizer;
 import com.docwhisperer.backend.services.DocumentService;
+import com.docwhisperer.backend.services.IngestResult;
+import com.docwhisperer.backend.services.IngestSource;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.List;
 
 @RestController
@@ -15,16 +29,24 @@ import java.util.List;
 /**
  * REST Controller for managing documents.
  * <p>
- * Provides endpoints for uploading, listing, and deleting documents.
+ * Provides endpoints for uploading, listing, and deleting documents, and for reading their summaries.
  * It interacts with the {@link DocumentService} to perform business logic.
  * </p>
  */
 public class DocumentController {
 
+    private static final long BATCH_TIMEOUT_MILLIS = Duration.ofHours(1).toMillis();
+    private static final int MAX_BULK_DELETE = 1000;
+
     private final DocumentService documentService;
+    private final BatchIngestionService batchIngestionService;
+    private final DocumentSummarizer documentSummarizer;
 
-    public DocumentController(DocumentService documentService) {
+    public DocumentController(DocumentService documentService, BatchIngestionService batchIngestionService,
+                              DocumentSummarizer documentSummarizer) {
         this.documentService = documentService;
+        this.batchIngestionService = batchIngestionService;
+        this.documentSummarizer = documentSummarizer;
     }
 
     /**
@@ -34,27 +56,110 @@ public class DocumentController {
      * and saves the metadata to the database.
      * </p>
      *
-     * @param file The file uploaded by the user.
+     * @param file       The file uploaded by the user.
+     * @param collection Optional collection (tenant) to store it in; defaults to "default".
      * @return The saved Document metadata.
      * @throws IOException If an error occurs during file processing.
      */
     @PostMapping
-    public ResponseEntity<Document> uploadDocument(@RequestParam("file") MultipartFile file) throws IOException {
+    public ResponseEntity<Document> uploadDocument(@RequestParam("file") MultipartFile file,
+                                                   @RequestParam(required = false) String collection) throws IOException {
         if (file.isEmpty()) {
             return ResponseEntity.badRequest().build();
         }
-        Document savedDoc = documentService.store(file);
+        Document savedDoc = documentService.store(file, collection);
         return ResponseEntity.ok(savedDoc);
     }
 
     /**
-     * Retrieves a list of all uploaded documents.
+     * Uploads many documents at once: several files and/or ZIP archives of PDF/DOCX files.
+     * <p>
+     * Files are parsed in parallel and embedded in shared batches. The response is a stream of
+     * newline-delimited JSON ({@code application/x-ndjson}), one {@link IngestResult} line per file,
+     * written as soon as that file is ingested or has failed.
+     * </p>
      *
-     * @return A list of Document objects containing metadata (name, size, type, etc.).
+     * @param files      The uploaded files (ZIP archives are expanded into their entries).
+     * @param collection Optional collection (tenant) to store them in; defaults to "default".
+     * @return The stream of per-file results.
+     * @throws IOException If the uploaded files cannot be read.
+     */
+    @PostMapping(value = "/batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseBodyEmitter uploadDocuments(@RequestParam("files") List<MultipartFile> files,
+                                               @RequestParam(required = false) String collection) throws IOException {
+        String validCollection = EmbeddingPartitions.requireValidCollection(collection);
+        List<IngestSource> sources = batchIngestionService.expand(files);
+        if (sources.isEmpty()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "No files to ingest");
+        }
+
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(BATCH_TIMEOUT_MILLIS);
+        batchIngestionService.submit(sources, validCollection, result -> send(emitter, result))
+                .whenComplete((ignored, error) -> {
+                    if (error == null) {
+                        emitter.complete();
+                    } else {
+                        emitter.completeWithError(error);
+                    }
+                });
+        return emitter;
+    }
+
+    /**
+     * Retrieves one page of uploaded documents, newest first.
+     * <p>
+     * Pass the returned {@code nextCursor} as {@code cursor} to get the next page.
+     * The response carries an ETag that changes whenever any document is added or removed;
+     * a request with a matching {@code If-None-Match} gets an empty 304 without querying the documents.
+     * </p>
+     *
+     * @param collection Optional collection (tenant) to list; defaults to "default".
+     * @param namePrefix Optional filter: only documents whose name starts with this.
+     * @param type       Optional filter: only documents of this MIME type.
+     * @param cursor     Optional cursor from the previous page.
+     * @param limit      Page size (default 50, at most 200).
+     * @param request    Used for the conditional GET check.
+     * @return The page of Document objects containing metadata (name, size, type, etc.) and the next cursor.
      */
     @GetMapping
-    public List<Document> listDocuments() {
-        return documentService.getAllDocuments();
+    public ResponseEntity<DocumentPage> listDocuments(
+            @RequestParam(required = false) String collection,
+            @RequestParam(required = false) String namePrefix,
+            @RequestParam(required = false) String type,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            WebRequest request) {
+        String validCollection = EmbeddingPartitions.requireValidCollection(collection);
+        String etag = "\"" + documentService.catalogVersion() + "\"";
+        if (request.checkNotModified(etag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).build();
+        }
+        DocumentPage page = documentService.listDocuments(validCollection, namePrefix, type, cursor, limit);
+        return ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .body(page);
+    }
+
+    /**
+     * Retrieves the precomputed summary and suggested questions of a document.
+     * <p>
+     * Summaries are generated in the background after upload, so right after an upload this may be 202.
+     * </p>
+     *
+     * @param id         The unique identifier of the document.
+     * @param collection Optional collection (tenant) of the document; defaults to "default".
+     * @return HTTP 200 with the summary, 202 Accepted (no body) while it is being generated, 404 if there is none.
+     */
+    @GetMapping("/{id}/summary")
+    public ResponseEntity<DocumentSummary> getSummary(@PathVariable String id,
+                                                      @RequestParam(required = false) String collection) {
+        String validCollection = EmbeddingPartitions.requireValidCollection(collection);
+        return documentSummarizer.find(validCollection, id)
+                .map(ResponseEntity::ok)
+                .orElseGet(() -> documentSummarizer.isPending(validCollection, id)
+                        ? ResponseEntity.accepted().build()
+                        : ResponseEntity.notFound().build());
     }
 
     /**
@@ -64,12 +169,45 @@ public class DocumentController {
      * and the associated vector embeddings from the vector store.
      * </p>
      *
-     * @param id The unique identifier of the document to delete.
-     * @return HTTP 204 No Content if successful.
+     * @param id         The unique identifier of the document to delete.
+     * @param collection Optional collection (tenant) of the document; defaults to "default".
+     * @return HTTP 204 No Content if successful (also if the collection has no such document).
      */
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteDocument(@PathVariable String id) {
-        documentService.deleteDocument(id);
+    public ResponseEntity<Void> deleteDocument(@PathVariable String id,
+                                               @RequestParam(required = false) String collection) {
+        documentService.deleteDocument(EmbeddingPartitions.requireValidCollection(collection), id);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Deletes several documents at once, e.g. {@code DELETE /api/documents?ids=a,b,c}.
+     * <p>
+     * All documents and their embeddings are removed in a single transaction.
+     * Only documents of the given collection are deleted.
+     * </p>
+     *
+     * @param ids        The identifiers of the documents to delete (at most 1000).
+     * @param collection Optional collection (tenant) of the documents; defaults to "default".
+     * @return HTTP 204 No Content if successful, 400 if no or too many ids were given.
+     */
+    @DeleteMapping(params = "ids")
+    public ResponseEntity<Void> deleteDocuments(@RequestParam List<String> ids,
+                                                @RequestParam(required = false) String collection) {
+        String validCollection = EmbeddingPartitions.requireValidCollection(collection);
+        if (ids.isEmpty() || ids.size() > MAX_BULK_DELETE) {
+            return ResponseEntity.badRequest().build();
+        }
+        documentService.deleteDocuments(validCollection, ids);
         return ResponseEntity.noContent().build();
     }
-}
\ No newline at end of file
+
+    private static void send(ResponseBodyEmitter emitter, IngestResult result) {
+        try {
+            emitter.send(result, MediaType.APPLICATION_JSON);
+            emitter.send("\n", MediaType.TEXT_PLAIN);
+        } catch (IOException | IllegalStateException e) {
+            // The client went away; the batch keeps going and its documents are still ingested
+        }
+    }
+}
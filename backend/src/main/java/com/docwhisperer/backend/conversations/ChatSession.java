@@ -0,0 +1,126 @@
+package com.docwhisperer.backend.conversations;
+
+import com.docwhisperer.backend.documents.RetrievedChunk;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Server-side state of one chat conversation, keyed by a session id.
+ * <p>
+ * A session keeps:
+ * <ul>
+ *     <li>The most recent turns verbatim.</li>
+ *     <li>A running summary of older turns that were compacted away, so prompt size stays bounded.</li>
+ *     <li>The retrieval of the last turn (question embedding + retrieved chunks), so a close follow-up
+ *     question can reuse it instead of running a new vector search.</li>
+ * </ul>
+ * Requests for the same session may arrive concurrently, so all state is guarded by the session's monitor.
+ * </p>
+ */
+public class ChatSession {
+
+    private final String id;
+    private final Deque<ChatTurn> recentTurns = new ArrayDeque<>();
+    private String summary;
+    private boolean compacting;
+
+    private float[] lastQuestionVector;
+    private String lastDocumentId;
+    private List<RetrievedChunk> lastRetrieved = List.of();
+
+    public ChatSession(String id) {
+        this.id = id;
+    }
+
+    public ChatSession(String id, String summary, List<ChatTurn> turns) {
+        this.id = id;
+        this.summary = summary;
+        this.recentTurns.addAll(turns);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public synchronized String getSummary() {
+        return summary;
+    }
+
+    public synchronized List<ChatTurn> getRecentTurns() {
+        return List.copyOf(recentTurns);
+    }
+
+    public synchronized void addTurn(ChatTurn turn) {
+        recentTurns.addLast(turn);
+    }
+
+    /**
+     * Claims the oldest turns for compaction once more than {@code maxRecentTurns} are held.
+     * The turns stay in the session (and in the prompt) until {@link #applyCompaction} replaces them with the summary.
+     *
+     * @return the turns to fold into the summary, or an empty list if no compaction is needed or one is already running.
+     */
+    public synchronized List<ChatTurn> claimTurnsForCompaction(int maxRecentTurns, int keepRecentTurns) {
+        if (compacting || recentTurns.size() <= maxRecentTurns) {
+            return List.of();
+        }
+        compacting = true;
+        return recentTurns.stream().limit(recentTurns.size() - keepRecentTurns).toList();
+    }
+
+    /**
+     * Replaces the {@code compactedTurns} oldest turns with the new summary.
+     */
+    public synchronized void applyCompaction(String newSummary, int compactedTurns) {
+        for (int i = 0; i < compactedTurns && !recentTurns.isEmpty(); i++) {
+            recentTurns.removeFirst();
+        }
+        summary = newSummary;
+        compacting = false;
+    }
+
+    /**
+     * Releases a claim made by {@link #claimTurnsForCompaction} without changing the session (e.g. on failure).
+     */
+    public synchronized void abortCompaction() {
+        compacting = false;
+    }
+
+    public synchronized void rememberRetrieval(String documentId, float[] questionVector, List<RetrievedChunk> retrieved) {
+        this.lastDocumentId = documentId;
+        this.lastQuestionVector = questionVector;
+        this.lastRetrieved = List.copyOf(retrieved);
+    }
+
+    /**
+     * Returns the chunks retrieved for the previous turn if the new question targets the same document
+     * and its embedding has a cosine similarity of at least {@code minSimilarity} with the previous question.
+     */
+    public synchronized Optional<List<RetrievedChunk>> reusableRetrieval(String documentId, float[] questionVector, double minSimilarity) {
+        if (lastQuestionVector == null || lastRetrieved.isEmpty() || !Objects.equals(lastDocumentId, documentId)) {
+            return Optional.empty();
+        }
+        return cosineSimilarity(lastQuestionVector, questionVector) >= minSimilarity
+                ? Optional.of(lastRetrieved)
+                : Optional.empty();
+    }
+
+    static double cosineSimilarity(float[] a, float[] b) {
+        if (a.length != b.length) {
+            return 0.0;
+        }
+        double dot = 0.0;
+        double normA = 0.0;
+        double normB = 0.0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+            normA += a[i] * a[i];
+            normB += b[i] * b[i];
+        }
+        return normA == 0.0 || normB == 0.0 ? 0.0 : dot / (Math.sqrt(normA) * Math.sqrt(normB));
+    }
+}
@@ -0,0 +1,13 @@
+package com.docwhisperer.backend.conversations;
+
+import java.time.LocalDateTime;
+
+/**
+ * One question/answer exchange inside a {@link ChatSession}.
+ *
+ * @param question  The user's question.
+ * @param answer    The assistant's answer.
+ * @param createdAt When the answer was produced.
+ */
+public record ChatTurn(String question, String answer, LocalDateTime createdAt) {
+}
@@ -30,6 +30,12 @@ public class Document implements Persistable<String> {
     private LocalDateTime uploadedAt;
     private Integer pageCount;
 
+    /**
+     * Collection (tenant) the document belongs to. Its embeddings are stored in that collection's
+     * partition of the 'embeddings' table.
+     */
+    private String collection;
+
     /**
      * Transient flag to indicate if the entity is new.
      * Not stored in the database.
@@ -41,14 +47,21 @@ public class Document implements Persistable<String> {
     public Document() {
     }
 
-    // Constructor for creating new documents
+    // Constructor for creating new documents in the default collection
     public Document(String id, String name, String type, Long size, LocalDateTime uploadedAt, Integer pageCount) {
+        this(id, name, type, size, uploadedAt, pageCount, "default");
+    }
+
+    // Constructor for creating new documents
+    public Document(String id, String name, String type, Long size, LocalDateTime uploadedAt, Integer pageCount,
+                    String collection) {
         this.id = id;
         this.name = name;
         this.type = type;
         this.size = size;
         this.uploadedAt = uploadedAt;
         this.pageCount = pageCount;
+        this.collection = collection;
         this.isNew = true; // Mark as new for insertion
     }
 
@@ -73,5 +86,7 @@ public class Document implements Persistable<String> {
     public void setUploadedAt(LocalDateTime uploadedAt) { this.uploadedAt = uploadedAt; }
     public Integer getPageCount() { return pageCount; }
     public void setPageCount(Integer pageCount) { this.pageCount = pageCount; }
+    public String getCollection() { return collection; }
+    public void setCollection(String collection) { this.collection = collection; }
     public void setId(String id) { this.id = id; }
 }
@@ -0,0 +1,17 @@
+package com.docwhisperer.backend.documents;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * The precomputed summary of a document and questions a reader could start with, generated in the background
+ * after ingestion.
+ *
+ * @param documentId         The summarized document.
+ * @param summary            Summary of the whole document.
+ * @param suggestedQuestions A few questions about the document, for starting a conversation.
+ * @param generatedAt        When the summary was generated.
+ */
+public record DocumentSummary(String documentId, String summary, List<String> suggestedQuestions,
+                              LocalDateTime generatedAt) {
+}
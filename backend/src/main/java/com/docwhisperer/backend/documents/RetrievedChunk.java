@@ -0,0 +1,13 @@
+package com.docwhisperer.backend.documents;
+
+/**
+ * A chunk of a document returned by the vector search, with where it came from.
+ *
+ * @param text         The chunk text, as sent to the LLM.
+ * @param documentId   The document the chunk belongs to.
+ * @param documentName The document's file name, or null if the document was deleted meanwhile.
+ * @param page         The 1-based page the chunk starts on, or null if the format has no pages (e.g. DOCX).
+ * @param score        Cosine similarity between the chunk and the question.
+ */
+public record RetrievedChunk(String text, String documentId, String documentName, Integer page, double score) {
+}
@@ -0,0 +1,267 @@
+package com.docwhisperer.backend.llm;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A {@link ChatLanguageModel} that spreads requests over several Ollama backends.
+ * <p>
+ * Routing and fault handling:
+ * <ul>
+ *     <li><b>Latency-aware least-outstanding routing</b>: each request goes to the available backend with the lowest
+ *     {@code (outstanding requests + 1) * average latency * (consecutive failures + 1)}, so slow, busy or flaky nodes
+ *     receive proportionally less work.</li>
+ *     <li><b>Circuit breaking</b>: after {@code failureThreshold} consecutive failures a backend is skipped for
+ *     {@code openDuration}; afterwards a single trial request decides whether it is closed again.</li>
+ *     <li><b>Health checks</b>: every {@code healthCheckInterval} the pool calls {@code GET /api/tags} on each backend
+ *     and takes unresponsive ones out of rotation until they answer again.</li>
+ *     <li><b>Failover</b>: a failed request is retried on another backend, up to {@code maxAttempts} backends.</li>
+ * </ul>
+ * Per-backend latency and outstanding requests are published as {@code docwhisperer.llm.backend.*} meters.
+ * </p>
+ */
+public class ChatModelPool implements ChatLanguageModel, AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ChatModelPool.class);
+
+    /** Weight of the newest sample in the exponentially weighted latency average. */
+    private static final double LATENCY_ALPHA = 0.2;
+
+    private final List<Backend> backends;
+    private final int maxAttempts;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final HttpClient httpClient;
+    private final ScheduledExecutorService healthChecker;
+    private final AtomicInteger rotation = new AtomicInteger();
+
+    public ChatModelPool(List<Backend> backends,
+                         MeterRegistry meterRegistry,
+                         int maxAttempts,
+                         int failureThreshold,
+                         Duration openDuration,
+                         Duration healthCheckInterval) {
+        if (backends.isEmpty()) {
+            throw new IllegalArgumentException("At least one LLM backend is required");
+        }
+        this.backends = List.copyOf(backends);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.failureThreshold = Math.max(1, failureThreshold);
+        this.openDuration = openDuration;
+        this.httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+
+        for (Backend backend : this.backends) {
+            backend.latency = Timer.builder("docwhisperer.llm.backend.latency")
+                    .description("Generation latency per LLM backend")
+                    .tag("backend", backend.name)
+                    .register(meterRegistry);
+            Gauge.builder("docwhisperer.llm.backend.outstanding", backend.outstanding, AtomicInteger::get)
+                    .description("Requests currently in progress per LLM backend")
+                    .tag("backend", backend.name)
+                    .register(meterRegistry);
+            Gauge.builder("docwhisperer.llm.backend.available", backend, b -> b.isAvailable(System.nanoTime()) ? 1 : 0)
+                    .description("Whether the LLM backend is healthy and its circuit is closed")
+                    .tag("backend", backend.name)
+                    .register(meterRegistry);
+        }
+
+        if (healthCheckInterval.isZero() || healthCheckInterval.isNegative()) {
+            this.healthChecker = null;
+        } else {
+            this.healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "llm-pool-health");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long intervalMillis = healthCheckInterval.toMillis();
+            healthChecker.scheduleWithFixedDelay(this::checkHealth, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public Response<AiMessage> generate(List<ChatMessage> messages) {
+        Set<Backend> tried = new HashSet<>();
+        RuntimeException lastFailure = null;
+
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            Backend backend = select(tried);
+            if (backend == null) {
+                break;
+            }
+            tried.add(backend);
+
+            backend.outstanding.incrementAndGet();
+            long start = System.nanoTime();
+            try {
+                Response<AiMessage> response = backend.delegate.generate(messages);
+                backend.recordSuccess(System.nanoTime() - start);
+                return response;
+            } catch (RuntimeException e) {
+                lastFailure = e;
+                backend.recordFailure(failureThreshold, openDuration);
+                log.warn("LLM backend {} failed (attempt {}/{}): {}", backend.name, attempt + 1, maxAttempts, e.getMessage());
+            } finally {
+                backend.outstanding.decrementAndGet();
+            }
+        }
+        throw new IllegalStateException("No LLM backend could serve the request", lastFailure);
+    }
+
+    /**
+     * Probes every backend with {@code GET /api/tags} and updates its health flag.
+     */
+    public void checkHealth() {
+        for (Backend backend : backends) {
+            boolean healthy;
+            try {
+                HttpRequest request = HttpRequest.newBuilder(backend.baseUrl.resolve("/api/tags"))
+                        .timeout(Duration.ofSeconds(2))
+                        .GET()
+                        .build();
+                healthy = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                healthy = false;
+            }
+            if (backend.healthy != healthy) {
+                log.info("LLM backend {} is now {}", backend.name, healthy ? "healthy" : "unhealthy");
+            }
+            backend.healthy = healthy;
+        }
+    }
+
+    public List<Backend> getBackends() {
+        return backends;
+    }
+
+    @Override
+    public void close() {
+        if (healthChecker != null) {
+            healthChecker.shutdownNow();
+        }
+    }
+
+    /**
+     * Picks the available backend with the lowest load score, skipping the ones already tried.
+     * The scan starts at a rotating offset so that ties are spread evenly.
+     */
+    private Backend select(Set<Backend> tried) {
+        long now = System.nanoTime();
+        List<Backend> candidates = new ArrayList<>(backends.size());
+        int offset = Math.floorMod(rotation.getAndIncrement(), backends.size());
+        for (int i = 0; i < backends.size(); i++) {
+            Backend backend = backends.get((offset + i) % backends.size());
+            if (!tried.contains(backend) && backend.isAvailable(now)) {
+                candidates.add(backend);
+            }
+        }
+
+        Backend best = null;
+        double bestScore = Double.MAX_VALUE;
+        for (Backend candidate : candidates) {
+            double score = (candidate.outstanding.get() + 1)
+                    * Math.max(1.0, candidate.averageLatencyMillis)
+                    * (candidate.consecutiveFailures + 1);
+            if (score < bestScore) {
+                best = candidate;
+                bestScore = score;
+            }
+        }
+        if (best != null && best.circuitOpenUntil != 0 && !best.tryHalfOpen(now)) {
+            // Another request is already probing this half-open backend; look for a different one
+            tried.add(best);
+            return select(tried);
+        }
+        return best;
+    }
+
+    /**
+     * One Ollama endpoint of the pool together with its routing and circuit-breaker state.
+     */
+    public static class Backend {
+
+        private final String name;
+        private final URI baseUrl;
+        private final ChatLanguageModel delegate;
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final AtomicBoolean halfOpenProbe = new AtomicBoolean();
+        private volatile boolean healthy = true;
+        private volatile double averageLatencyMillis;
+        private volatile long circuitOpenUntil;
+        private volatile int consecutiveFailures;
+        private Timer latency;
+
+        public Backend(String name, URI baseUrl, ChatLanguageModel delegate) {
+            this.name = name;
+            this.baseUrl = baseUrl;
+            this.delegate = delegate;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isHealthy() {
+            return healthy;
+        }
+
+        public boolean isCircuitOpen() {
+            return circuitOpenUntil != 0 && System.nanoTime() < circuitOpenUntil;
+        }
+
+        boolean isAvailable(long now) {
+            return healthy && (circuitOpenUntil == 0 || now >= circuitOpenUntil);
+        }
+
+        /**
+         * Lets exactly one request through once the open period of the circuit is over.
+         */
+        boolean tryHalfOpen(long now) {
+            return now >= circuitOpenUntil && halfOpenProbe.compareAndSet(false, true);
+        }
+
+        synchronized void recordSuccess(long elapsedNanos) {
+            double millis = elapsedNanos / 1_000_000.0;
+            averageLatencyMillis = averageLatencyMillis == 0
+                    ? millis
+                    : LATENCY_ALPHA * millis + (1 - LATENCY_ALPHA) * averageLatencyMillis;
+            latency.record(elapsedNanos, TimeUnit.NANOSECONDS);
+            consecutiveFailures = 0;
+            circuitOpenUntil = 0;
+            halfOpenProbe.set(false);
+        }
+
+        synchronized void recordFailure(int failureThreshold, Duration openDuration) {
+            consecutiveFailures++;
+            if (consecutiveFailures >= failureThreshold || circuitOpenUntil != 0) {
+                // Open (or re-open after a failed half-open probe)
+                circuitOpenUntil = System.nanoTime() + openDuration.toNanos();
+                halfOpenProbe.set(false);
+            }
+        }
+    }
+}
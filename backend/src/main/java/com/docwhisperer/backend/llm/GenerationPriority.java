@@ -0,0 +1,18 @@
+package com.docwhisperer.backend.llm;
+
+/**
+ * Priority classes of the {@link GenerationScheduler}.
+ */
+public enum GenerationPriority {
+
+    /**
+     * A user is waiting for the answer (chat requests). Always dequeued first.
+     */
+    INTERACTIVE,
+
+    /**
+     * Nobody is waiting synchronously (conversation compaction, document summaries).
+     * Limited to a subset of the in-flight slots so it can never starve interactive requests.
+     */
+    BACKGROUND
+}
@@ -0,0 +1,29 @@
+package com.docwhisperer.backend.llm;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Thrown when the {@link GenerationScheduler} refuses a generation request, either because the queue
+ * of its priority class is full or because it waited longer than the configured maximum.
+ * <p>
+ * Surfaces as HTTP 429 Too Many Requests with a {@code Retry-After} header, so clients back off
+ * instead of piling more work onto an already saturated LLM.
+ * </p>
+ */
+public class GenerationRejectedException extends ResponseStatusException {
+
+    private static final String RETRY_AFTER_SECONDS = "2";
+
+    public GenerationRejectedException(String reason) {
+        super(HttpStatus.TOO_MANY_REQUESTS, reason);
+    }
+
+    @Override
+    public HttpHeaders getHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+        return headers;
+    }
+}
@@ -0,0 +1,311 @@
+package com.docwhisperer.backend.llm;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Admission control and scheduling for every call to the {@link ChatLanguageModel}.
+ * <p>
+ * Ollama queues concurrent requests internally, so during a burst every request slows down and many
+ * hit the client timeout after already consuming compute. This scheduler keeps that queue on our side instead:
+ * <ul>
+ *     <li>At most {@code max-in-flight} generations per LLM backend run at the same time (one worker thread per
+ *     slot). With a {@link ChatModelPool} the slots are multiplied by its number of backends, so the scheduler does
+ *     not cap the pool at the throughput of a single Ollama instance.</li>
+ *     <li>Waiting requests are held in one bounded FIFO queue per {@link GenerationPriority};
+ *     interactive requests are always dequeued before background ones.</li>
+ *     <li>Background work may occupy at most {@code max-background-in-flight} slots, and never the last one:
+ *     at least one slot is always kept for interactive requests. With a single slot in total there is none left
+ *     for background work, so background requests are rejected right away (they would otherwise wait forever).</li>
+ *     <li>When a queue is full the request is rejected immediately with a {@link GenerationRejectedException} (HTTP 429),
+ *     and requests that waited longer than {@code max-queue-wait} are dropped rather than sent to the model.</li>
+ * </ul>
+ * Queue wait time, queue sizes, in-flight count and rejections are published as {@code docwhisperer.llm.*} meters.
+ * </p>
+ * <p>
+ * Requests are not batched: Ollama's chat API takes one conversation per request and batches concurrent
+ * requests itself ({@code OLLAMA_NUM_PARALLEL}), so {@code max-in-flight} should match that setting of each backend.
+ * </p>
+ */
+@Component
+public class GenerationScheduler {
+
+    private static final Logger log = LoggerFactory.getLogger(GenerationScheduler.class);
+
+    private final ChatLanguageModel chatLanguageModel;
+    private final int maxBackgroundInFlight;
+    private final Duration maxQueueWait;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition taskAvailable = lock.newCondition();
+    private final Map<GenerationPriority, Deque<Task>> queues = new EnumMap<>(GenerationPriority.class);
+    private final Map<GenerationPriority, Integer> capacities = new EnumMap<>(GenerationPriority.class);
+    private final Map<GenerationPriority, Timer> queueWaitTimers = new EnumMap<>(GenerationPriority.class);
+    private final MeterRegistry meterRegistry;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final List<Thread> workers = new ArrayList<>();
+    private int backgroundInFlight;
+    private volatile boolean running = true;
+
+    public GenerationScheduler(ChatLanguageModel chatLanguageModel,
+                               MeterRegistry meterRegistry,
+                               @Value("${docwhisperer.llm.scheduler.max-in-flight:2}") int maxInFlight,
+                               @Value("${docwhisperer.llm.scheduler.max-background-in-flight:1}") int maxBackgroundInFlight,
+                               @Value("${docwhisperer.llm.scheduler.queue-capacity:32}") int queueCapacity,
+                               @Value("${docwhisperer.llm.scheduler.background-queue-capacity:256}") int backgroundQueueCapacity,
+                               @Value("${docwhisperer.llm.scheduler.max-queue-wait:PT60S}") Duration maxQueueWait) {
+        this.chatLanguageModel = chatLanguageModel;
+        this.meterRegistry = meterRegistry;
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("docwhisperer.llm.scheduler.max-in-flight must be at least 1");
+        }
+        // max-in-flight is per backend: a pool gets as many slots as its backends can run together
+        int backends = chatLanguageModel instanceof ChatModelPool pool ? pool.getBackends().size() : 1;
+        int slots = maxInFlight * backends;
+        // The last slot is reserved for interactive requests
+        this.maxBackgroundInFlight = Math.max(0, Math.min(maxBackgroundInFlight, slots - 1));
+        if (this.maxBackgroundInFlight == 0) {
+            log.warn("No LLM slot left for background work ({} slot in total): summaries and conversation compaction are disabled",
+                    slots);
+        }
+        log.info("LLM scheduler: {} slots ({} per backend, {} backends), {} for background work",
+                slots, maxInFlight, backends, this.maxBackgroundInFlight);
+        this.maxQueueWait = maxQueueWait;
+        capacities.put(GenerationPriority.INTERACTIVE, queueCapacity);
+        capacities.put(GenerationPriority.BACKGROUND, backgroundQueueCapacity);
+
+        for (GenerationPriority priority : GenerationPriority.values()) {
+            Deque<Task> queue = new ArrayDeque<>();
+            queues.put(priority, queue);
+            queueWaitTimers.put(priority, Timer.builder("docwhisperer.llm.queue.wait")
+                    .description("Time a generation request waited for a free LLM slot")
+                    .tag("priority", priority.name().toLowerCase())
+                    .publishPercentileHistogram()
+                    .register(meterRegistry));
+            Gauge.builder("docwhisperer.llm.queue.size", this, scheduler -> scheduler.queueSize(priority))
+                    .description("Generation requests waiting for a free LLM slot")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(meterRegistry);
+        }
+        Gauge.builder("docwhisperer.llm.in.flight", inFlight, AtomicInteger::get)
+                .description("Generation requests currently being processed by the LLM")
+                .register(meterRegistry);
+
+        for (int i = 0; i < slots; i++) {
+            Thread worker = new Thread(this::workLoop, "llm-scheduler-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            workers.add(worker);
+        }
+    }
+
+    /**
+     * Queues a generation request.
+     *
+     * @return a future completed with the model's response once a slot was free and the model answered.
+     * @throws GenerationRejectedException if the queue of this priority class is full, or it is a background
+     *                                     request and no slot may run background work.
+     */
+    public CompletableFuture<Response<AiMessage>> submit(GenerationPriority priority, List<ChatMessage> messages) {
+        if (priority == GenerationPriority.BACKGROUND && maxBackgroundInFlight == 0) {
+            reject(priority, "no-background-slot");
+            throw new GenerationRejectedException("No capacity for background work");
+        }
+        Task task = new Task(priority, List.copyOf(messages), System.nanoTime());
+        lock.lock();
+        try {
+            Deque<Task> queue = queues.get(priority);
+            if (!running || queue.size() >= capacities.get(priority)) {
+                reject(priority, "queue-full");
+                throw new GenerationRejectedException("The assistant is busy, please retry in a moment");
+            }
+            queue.addLast(task);
+            taskAvailable.signal();
+        } finally {
+            lock.unlock();
+        }
+        return task.future;
+    }
+
+    /**
+     * Queues a generation request and waits for its response.
+     *
+     * @throws GenerationRejectedException if the request was rejected or expired in the queue.
+     */
+    public Response<AiMessage> generate(GenerationPriority priority, List<ChatMessage> messages) {
+        CompletableFuture<Response<AiMessage>> future = submit(priority, messages);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the LLM", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new CompletionException(e.getCause());
+        }
+    }
+
+    public int queueSize(GenerationPriority priority) {
+        lock.lock();
+        try {
+            return queues.get(priority).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return the number of generations that may run at the same time, over all backends.
+     */
+    public int slots() {
+        return workers.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        lock.lock();
+        try {
+            running = false;
+            for (Deque<Task> queue : queues.values()) {
+                queue.forEach(task -> task.future.completeExceptionally(
+                        new GenerationRejectedException("The assistant is shutting down")));
+                queue.clear();
+            }
+            taskAvailable.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        workers.forEach(Thread::interrupt);
+    }
+
+    private void workLoop() {
+        while (running) {
+            Task task;
+            try {
+                task = takeNext();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            try {
+                run(task);
+            } finally {
+                if (task.priority == GenerationPriority.BACKGROUND) {
+                    lock.lock();
+                    try {
+                        backgroundInFlight--;
+                        taskAvailable.signal();
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Blocks until a task is eligible: interactive tasks first, background tasks only while
+     * fewer than {@code maxBackgroundInFlight} of them are running.
+     */
+    private Task takeNext() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                Task task = queues.get(GenerationPriority.INTERACTIVE).pollFirst();
+                if (task != null) {
+                    return task;
+                }
+                if (backgroundInFlight < maxBackgroundInFlight) {
+                    task = queues.get(GenerationPriority.BACKGROUND).pollFirst();
+                    if (task != null) {
+                        backgroundInFlight++;
+                        return task;
+                    }
+                }
+                taskAvailable.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run(Task task) {
+        long waitedNanos = System.nanoTime() - task.enqueuedAtNanos;
+        queueWaitTimers.get(task.priority).record(waitedNanos, TimeUnit.NANOSECONDS);
+
+        if (task.future.isDone()) {
+            return; // cancelled by the caller while queued
+        }
+        if (waitedNanos > maxQueueWait.toNanos()) {
+            reject(task.priority, "expired");
+            task.future.completeExceptionally(
+                    new GenerationRejectedException("The assistant is busy, please retry in a moment"));
+            return;
+        }
+
+        inFlight.incrementAndGet();
+        try {
+            task.future.complete(chatLanguageModel.generate(task.messages));
+        } catch (Throwable e) {
+            task.future.completeExceptionally(e);
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    private void reject(GenerationPriority priority, String reason) {
+        log.debug("Rejected {} generation request: {}", priority, reason);
+        Counter.builder("docwhisperer.llm.rejected")
+                .description("Generation requests rejected by admission control")
+                .tag("priority", priority.name().toLowerCase())
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+    }
+
+    private static final class Task {
+        private final GenerationPriority priority;
+        private final List<ChatMessage> messages;
+        private final long enqueuedAtNanos;
+        private final CompletableFuture<Response<AiMessage>> future = new CompletableFuture<>();
+
+        private Task(GenerationPriority priority, List<ChatMessage> messages, long enqueuedAtNanos) {
+            this.priority = priority;
+            this.messages = messages;
+            this.enqueuedAtNanos = enqueuedAtNanos;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.docwhisperer.backend.llm;
+
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * An {@link EmbeddingModel} that creates the real model on first use instead of at context startup.
+ * <p>
+ * Loading the in-process ONNX model takes seconds, which used to be spent while the application context was
+ * being built. Deferring it lets the web server (and the liveness probe) come up first; the startup warm-up
+ * then loads it before readiness turns green. Creation is thread-safe and happens exactly once.
+ * </p>
+ */
+public class LazyEmbeddingModel implements EmbeddingModel {
+
+    private static final Logger log = LoggerFactory.getLogger(LazyEmbeddingModel.class);
+
+    private final Supplier<EmbeddingModel> factory;
+    private volatile EmbeddingModel delegate;
+
+    public LazyEmbeddingModel(Supplier<EmbeddingModel> factory) {
+        this.factory = factory;
+    }
+
+    @Override
+    public Response<List<Embedding>> embedAll(List<TextSegment> textSegments) {
+        return delegate().embedAll(textSegments);
+    }
+
+    @Override
+    public Response<Embedding> embed(String text) {
+        return delegate().embed(text);
+    }
+
+    @Override
+    public Response<Embedding> embed(TextSegment textSegment) {
+        return delegate().embed(textSegment);
+    }
+
+    /**
+     * Whether the real model has been created yet.
+     */
+    public boolean isLoaded() {
+        return delegate != null;
+    }
+
+    private EmbeddingModel delegate() {
+        EmbeddingModel model = delegate;
+        if (model == null) {
+            synchronized (this) {
+                model = delegate;
+                if (model == null) {
+                    long start = System.nanoTime();
+                    model = factory.get();
+                    delegate = model;
+                    log.info("Loaded embedding model in {} ms", (System.nanoTime() - start) / 1_000_000);
+                }
+            }
+        }
+        return model;
+    }
+}
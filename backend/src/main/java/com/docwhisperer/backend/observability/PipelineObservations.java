@@ -0,0 +1,119 @@
+package com.docwhisperer.backend.observability;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.TimeGauge;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Central place for instrumenting the RAG pipeline with Micrometer.
+ * <p>
+ * Every pipeline run (a chat request or a document ingestion) is wrapped in a parent
+ * {@link Observation}, and every stage inside it (embed, vector search, LLM generate, ...)
+ * in a child observation. Each observation produces both a timer (tagged with the stage name)
+ * and a tracing span, so a single slow request can be broken down stage by stage.
+ * </p>
+ * <ul>
+ *     <li>Timers: {@code docwhisperer.chat.stage} / {@code docwhisperer.ingest.stage} tagged by {@code stage}.</li>
+ *     <li>Histograms: retrieved chunk counts and prompt sizes (characters).</li>
+ *     <li>Gauges: queue depth of every executor registered through {@link #monitor}, and
+ *     {@code docwhisperer.startup.first-answer}: JVM uptime when the first chat answer was returned.</li>
+ * </ul>
+ */
+@Component
+public class PipelineObservations {
+
+    public static final String CHAT = "docwhisperer.chat";
+    public static final String INGEST = "docwhisperer.ingest";
+
+    private final ObservationRegistry observationRegistry;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary retrievedChunks;
+    private final DistributionSummary promptChars;
+    private final AtomicLong firstAnswerMillis = new AtomicLong(-1);
+
+    public PipelineObservations(ObservationRegistry observationRegistry, MeterRegistry meterRegistry) {
+        this.observationRegistry = observationRegistry;
+        this.meterRegistry = meterRegistry;
+        this.retrievedChunks = DistributionSummary.builder("docwhisperer.chat.retrieved.chunks")
+                .description("Number of chunks returned by the vector search per chat request")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.promptChars = DistributionSummary.builder("docwhisperer.chat.prompt.size")
+                .description("Size of the prompt sent to the LLM")
+                .baseUnit("characters")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        TimeGauge.builder("docwhisperer.startup.first-answer", firstAnswerMillis, TimeUnit.MILLISECONDS, AtomicLong::get)
+                .description("Time from JVM start to the first answered chat request (-1 until then)")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Runs a whole pipeline (e.g. one chat request) inside a parent observation,
+     * so that all stage observations started inside become its children.
+     */
+    public <T, E extends Throwable> T pipeline(String pipeline, Observation.CheckedCallable<T, E> action) throws E {
+        return Observation.createNotStarted(pipeline, observationRegistry)
+                .contextualName(pipeline)
+                .observeChecked(action);
+    }
+
+    /**
+     * Runs a single stage of a pipeline and records its duration under {@code <pipeline>.stage}.
+     */
+    public <T> T stage(String pipeline, String stage, Supplier<T> action) {
+        return newStage(pipeline, stage).observe(action);
+    }
+
+    /**
+     * Variant of {@link #stage(String, String, Supplier)} for stages that throw checked exceptions (e.g. parsing).
+     */
+    public <T, E extends Throwable> T checkedStage(String pipeline, String stage, Observation.CheckedCallable<T, E> action) throws E {
+        return newStage(pipeline, stage).observeChecked(action);
+    }
+
+    public void recordRetrievedChunks(int count) {
+        retrievedChunks.record(count);
+    }
+
+    public void recordPromptSize(int characters) {
+        promptChars.record(characters);
+    }
+
+    /**
+     * Records the time to the first good answer (JVM uptime) on the first call; later calls do nothing.
+     */
+    public void recordAnswered() {
+        if (firstAnswerMillis.get() < 0) {
+            firstAnswerMillis.compareAndSet(-1, ManagementFactory.getRuntimeMXBean().getUptime());
+        }
+    }
+
+    /**
+     * Wraps an executor so that its queue depth, active threads and task timings are published
+     * as {@code executor.*} meters tagged with {@code name}.
+     */
+    public ExecutorService monitor(ExecutorService executor, String name) {
+        return ExecutorServiceMetrics.monitor(meterRegistry, executor, name);
+    }
+
+    public MeterRegistry meterRegistry() {
+        return meterRegistry;
+    }
+
+    private Observation newStage(String pipeline, String stage) {
+        return Observation.createNotStarted(pipeline + ".stage", observationRegistry)
+                .contextualName(pipeline + " " + stage)
+                .lowCardinalityKeyValue("stage", stage);
+    }
+}
@@ -0,0 +1,123 @@
+package com.docwhisperer.backend.repositories;
+
+import com.docwhisperer.backend.conversations.ChatSession;
+import com.docwhisperer.backend.conversations.ChatTurn;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds chat sessions in a bounded in-memory LRU cache, optionally backed by PostgreSQL.
+ * <p>
+ * At most {@code maxSessions} sessions are kept in memory; the least recently used one is evicted first.
+ * When persistence is enabled ({@code docwhisperer.chat.sessions.persist=true}), turns and summaries are
+ * also written to the 'chat_session' / 'chat_turn' tables, and an evicted session is transparently
+ * reloaded (summary + most recent turns) on its next request.
+ * </p>
+ */
+@Repository
+public class ConversationStore {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean persist;
+    private final int reloadTurns;
+    private final Map<String, ChatSession> sessions;
+
+    public ConversationStore(JdbcTemplate jdbcTemplate,
+                             @Value("${docwhisperer.chat.sessions.max-sessions:1000}") int maxSessions,
+                             @Value("${docwhisperer.chat.sessions.max-recent-turns:6}") int reloadTurns,
+                             @Value("${docwhisperer.chat.sessions.persist:false}") boolean persist) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.persist = persist;
+        this.reloadTurns = reloadTurns;
+        // Access-ordered LinkedHashMap = LRU; guarded by synchronizedMap since lookups reorder entries
+        this.sessions = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ChatSession> eldest) {
+                return size() > maxSessions;
+            }
+        });
+    }
+
+    /**
+     * Returns the session with the given id, loading it from the database if it was evicted,
+     * or creates an empty one if it does not exist.
+     * <p>
+     * The database load runs outside the map's lock, so a slow reload does not block requests of other
+     * sessions. If two requests load the same session concurrently, the first one stored wins.
+     * </p>
+     */
+    public ChatSession getOrCreate(String sessionId) {
+        ChatSession session = sessions.get(sessionId);
+        if (session != null) {
+            return session;
+        }
+        ChatSession loaded = load(sessionId);
+        ChatSession existing = sessions.putIfAbsent(sessionId, loaded);
+        return existing != null ? existing : loaded;
+    }
+
+    /**
+     * Appends a turn to the session and, if persistence is enabled, to the 'chat_turn' table.
+     */
+    public void appendTurn(ChatSession session, ChatTurn turn) {
+        session.addTurn(turn);
+        if (persist) {
+            jdbcTemplate.update("""
+                    INSERT INTO chat_session (id, summary, updated_at) VALUES (?, NULL, ?)
+                    ON CONFLICT (id) DO UPDATE SET updated_at = EXCLUDED.updated_at
+                    """, session.getId(), Timestamp.valueOf(turn.createdAt()));
+            jdbcTemplate.update(
+                    "INSERT INTO chat_turn (session_id, question, answer, created_at) VALUES (?, ?, ?, ?)",
+                    session.getId(), turn.question(), turn.answer(), Timestamp.valueOf(turn.createdAt()));
+        }
+    }
+
+    /**
+     * Replaces the {@code compactedTurns} oldest turns of the session with {@code summary}.
+     */
+    public void applyCompaction(ChatSession session, String summary, int compactedTurns) {
+        session.applyCompaction(summary, compactedTurns);
+        if (persist) {
+            jdbcTemplate.update("UPDATE chat_session SET summary = ?, updated_at = ? WHERE id = ?",
+                    summary, Timestamp.valueOf(LocalDateTime.now()), session.getId());
+            jdbcTemplate.update("""
+                    DELETE FROM chat_turn WHERE id IN (
+                        SELECT id FROM chat_turn WHERE session_id = ? ORDER BY id LIMIT ?
+                    )
+                    """, session.getId(), compactedTurns);
+        }
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    private ChatSession load(String sessionId) {
+        if (!persist) {
+            return new ChatSession(sessionId);
+        }
+        List<String> summaries = jdbcTemplate.queryForList(
+                "SELECT summary FROM chat_session WHERE id = ?", String.class, sessionId);
+        if (summaries.isEmpty()) {
+            return new ChatSession(sessionId);
+        }
+        List<ChatTurn> turns = new ArrayList<>(jdbcTemplate.query(
+                "SELECT question, answer, created_at FROM chat_turn WHERE session_id = ? ORDER BY id DESC LIMIT ?",
+                (rs, rowNum) -> new ChatTurn(
+                        rs.getString("question"),
+                        rs.getString("answer"),
+                        rs.getTimestamp("created_at").toLocalDateTime()),
+                sessionId, reloadTurns));
+        Collections.reverse(turns);
+        return new ChatSession(sessionId, summaries.get(0), turns);
+    }
+}
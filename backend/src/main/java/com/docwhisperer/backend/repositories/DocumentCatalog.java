@@ -0,0 +1,82 @@
+package com.docwhisperer.backend.repositories;
+
+import com.docwhisperer.backend.documents.Document;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read side of the 'document' table for the document listing: keyset-paginated, filterable queries.
+ * <p>
+ * Pages are ordered newest first by {@code (uploaded_at, id)}, and the next page starts strictly after the last
+ * row of the previous one, so every page is a single index range scan no matter how deep the client pages
+ * (unlike {@code OFFSET}). The matching indexes are defined in schema.sql.
+ * </p>
+ */
+@Repository
+public class DocumentCatalog {
+
+    private static final RowMapper<Document> ROW_MAPPER = new BeanPropertyRowMapper<>(Document.class);
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DocumentCatalog(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Position of a row in the listing order; a page starts right after it.
+     */
+    public record Position(LocalDateTime uploadedAt, String id) {
+    }
+
+    /**
+     * Returns up to {@code limit} documents of one collection, newest first.
+     *
+     * @param collection Only documents of this collection (tenant).
+     * @param namePrefix Only documents whose name starts with this (case-sensitive), or null for all.
+     * @param type       Only documents with exactly this MIME type, or null for all.
+     * @param after      Only documents after this position, or null to start at the newest.
+     * @param limit      The maximum number of documents to return.
+     */
+    public List<Document> findPage(String collection, String namePrefix, String type, Position after, int limit) {
+        StringBuilder sql = new StringBuilder("SELECT id, name, type, size, uploaded_at, page_count, collection FROM document WHERE collection = ?");
+        List<Object> args = new ArrayList<>();
+        args.add(collection);
+        if (namePrefix != null) {
+            sql.append(" AND name LIKE ? ESCAPE '\\'");
+            args.add(escapeLike(namePrefix) + "%");
+        }
+        if (type != null) {
+            sql.append(" AND type = ?");
+            args.add(type);
+        }
+        if (after != null) {
+            sql.append(" AND (uploaded_at, id) < (?, ?)");
+            args.add(Timestamp.valueOf(after.uploadedAt()));
+            args.add(after.id());
+        }
+        sql.append(" ORDER BY uploaded_at DESC, id DESC LIMIT ?");
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), ROW_MAPPER, args.toArray());
+    }
+
+    /**
+     * Returns a number that changes whenever a row of the 'document' table is inserted, updated or deleted
+     * (maintained by a trigger, see schema.sql). Used as the ETag of the listing.
+     */
+    public long version() {
+        Long version = jdbcTemplate.queryForObject("SELECT version FROM document_catalog_version WHERE id = 1", Long.class);
+        return version != null ? version : 0;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -1,9 +1,14 @@
 package com.docwhisperer.backend.repositories;
 
 import com.docwhisperer.backend.documents.Document;
+import org.springframework.data.jdbc.repository.query.Modifying;
+import org.springframework.data.jdbc.repository.query.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+
 /**
  * Data Access Object (DAO) for the Document entity.
  * <p>
@@ -14,4 +19,19 @@ import org.springframework.stereotype.Repository;
  */
 @Repository
 public interface DocumentRepository extends CrudRepository<Document, String> {
+
+    /**
+     * Whether the document exists and belongs to {@code collection}.
+     */
+    @Query("SELECT EXISTS (SELECT 1 FROM document WHERE id = :id AND collection = :collection)")
+    boolean existsInCollection(@Param("collection") String collection, @Param("id") String id);
+
+    /**
+     * Deletes those of the given documents that belong to {@code collection}; ids of other collections are ignored.
+     *
+     * @return The number of deleted documents.
+     */
+    @Modifying
+    @Query("DELETE FROM document WHERE collection = :collection AND id IN (:ids)")
+    int deleteAllByIdInCollection(@Param("collection") String collection, @Param("ids") Collection<String> ids);
 }
@@ -0,0 +1,96 @@
+package com.docwhisperer.backend.repositories;
+
+import com.docwhisperer.backend.documents.DocumentSummary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Direct SQL access to the 'document_summary' and 'document_summary_attempt' tables. Rows are removed together
+ * with their document ({@code ON DELETE CASCADE}).
+ */
+@Repository
+public class DocumentSummaryRepository {
+
+    private static final RowMapper<DocumentSummary> ROW_MAPPER = (rs, rowNum) -> new DocumentSummary(
+            rs.getString("document_id"),
+            rs.getString("summary"),
+            Arrays.asList((String[]) rs.getArray("suggested_questions").getArray()),
+            rs.getTimestamp("generated_at").toLocalDateTime());
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DocumentSummaryRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Returns the summary of a document, if the document belongs to {@code collection} and has one.
+     */
+    public Optional<DocumentSummary> findByDocumentId(String collection, String documentId) {
+        return jdbcTemplate.query("""
+                SELECT s.document_id, s.summary, s.suggested_questions, s.generated_at
+                FROM document_summary s
+                JOIN document d ON d.id = s.document_id
+                WHERE s.document_id = ? AND d.collection = ?
+                """, ROW_MAPPER, documentId, collection).stream().findFirst();
+    }
+
+    /**
+     * Inserts or replaces the summary of a document.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException if the document does not exist (anymore).
+     */
+    public void save(DocumentSummary summary) {
+        jdbcTemplate.update("""
+                INSERT INTO document_summary (document_id, summary, suggested_questions, generated_at)
+                VALUES (?, ?, ?, ?)
+                ON CONFLICT (document_id) DO UPDATE SET summary = EXCLUDED.summary,
+                    suggested_questions = EXCLUDED.suggested_questions, generated_at = EXCLUDED.generated_at
+                """, ps -> {
+            ps.setString(1, summary.documentId());
+            ps.setString(2, summary.summary());
+            ps.setArray(3, ps.getConnection().createArrayOf("text", summary.suggestedQuestions().toArray()));
+            ps.setTimestamp(4, Timestamp.valueOf(summary.generatedAt()));
+        });
+    }
+
+    /**
+     * Records an unsuccessful summary attempt of a document.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException if the document does not exist (anymore).
+     */
+    public void recordFailure(String documentId) {
+        jdbcTemplate.update("""
+                INSERT INTO document_summary_attempt (document_id, failures, last_attempt_at)
+                VALUES (?, 1, LOCALTIMESTAMP)
+                ON CONFLICT (document_id) DO UPDATE SET failures = document_summary_attempt.failures + 1,
+                    last_attempt_at = LOCALTIMESTAMP
+                """, documentId);
+    }
+
+    /**
+     * Returns up to {@code limit} ids of documents that have no summary yet and are due for an attempt:
+     * never attempted, or failed fewer than {@code maxFailures} times and last tried longer ago than
+     * {@code backoff} doubled for every failure after the first. Never attempted documents come first,
+     * then oldest first.
+     */
+    public List<String> findDocumentIdsWithoutSummary(int limit, int maxFailures, Duration backoff) {
+        return jdbcTemplate.queryForList("""
+                SELECT d.id
+                FROM document d
+                LEFT JOIN document_summary_attempt a ON a.document_id = d.id
+                WHERE NOT EXISTS (SELECT 1 FROM document_summary s WHERE s.document_id = d.id)
+                AND (a.document_id IS NULL OR (a.failures < ?
+                    AND a.last_attempt_at < LOCALTIMESTAMP - make_interval(secs => ? * power(2, a.failures - 1))))
+                ORDER BY COALESCE(a.failures, 0), d.uploaded_at, d.id
+                LIMIT ?
+                """, String.class, maxFailures, (double) backoff.toSeconds(), limit);
+    }
+}
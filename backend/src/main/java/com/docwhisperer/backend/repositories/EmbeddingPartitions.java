@@ -0,0 +1,225 @@
+package com.docwhisperer.backend.repositories;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Repository;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Manages the partitions of the 'embeddings' table, which is list-partitioned by collection
+ * (one partition {@code embeddings_<collection>} per collection/tenant, see schema.sql).
+ * <p>
+ * Responsibilities:
+ * <ul>
+ *     <li>Creating the partition of a new collection on first use. The table is created standalone and then
+ *     attached, which only takes a SHARE UPDATE EXCLUSIVE lock on the parent, so searches and inserts
+ *     in other collections keep running. The parent's indexes (HNSW, document id) are created on it automatically.</li>
+ *     <li>Moving the rows of a pre-partitioning table (renamed to 'embeddings_legacy' by schema.sql)
+ *     into the partitioned table, in batches, on a background thread once the application is ready.</li>
+ *     <li>Vacuuming partitions with many dead tuples one at a time, instead of the whole corpus at once.</li>
+ * </ul>
+ * </p>
+ */
+@Repository
+public class EmbeddingPartitions {
+
+    public static final String DEFAULT_COLLECTION = "default";
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingPartitions.class);
+
+    /** Collection names end up in table names, so they are restricted to safe identifiers. */
+    private static final Pattern COLLECTION_NAME = Pattern.compile("[a-z0-9_]{1,48}");
+
+    private static final int MIGRATION_BATCH_SIZE = 1000;
+
+    /** Logs the migration progress every 100 batches (100,000 rows). */
+    private static final int MIGRATION_PROGRESS_BATCHES = 100;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final double vacuumDeadTupleRatio;
+    private final Set<String> knownCollections = ConcurrentHashMap.newKeySet();
+
+    /** Whether 'embeddings_legacy' still exists; null until first checked. */
+    private volatile Boolean migrating;
+
+    public EmbeddingPartitions(JdbcTemplate jdbcTemplate,
+                               @Value("${docwhisperer.maintenance.partitions.vacuum-dead-tuple-ratio:0.1}") double vacuumDeadTupleRatio) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.vacuumDeadTupleRatio = vacuumDeadTupleRatio;
+    }
+
+    /**
+     * Returns the collection name, or {@link #DEFAULT_COLLECTION} if null/blank.
+     *
+     * @throws ResponseStatusException (400) if the name is not 1-48 characters of [a-z0-9_].
+     */
+    public static String requireValidCollection(String collection) {
+        if (collection == null || collection.isBlank()) {
+            return DEFAULT_COLLECTION;
+        }
+        if (!COLLECTION_NAME.matcher(collection).matches()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST,
+                    "Collection names must be 1-48 characters of lowercase letters, digits and '_'");
+        }
+        return collection;
+    }
+
+    /**
+     * Makes sure the partition of {@code collection} exists. Cheap after the first call per collection.
+     */
+    public void ensurePartition(String collection) {
+        if (knownCollections.contains(collection)) {
+            return;
+        }
+        String partition = partitionName(requireValidCollection(collection));
+        if (!isAttached(partition)) {
+            try {
+                jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + partition
+                        + " (LIKE embeddings INCLUDING DEFAULTS INCLUDING CONSTRAINTS)"
+                        + " WITH (autovacuum_vacuum_scale_factor = 0.02, autovacuum_analyze_scale_factor = 0.02,"
+                        + " autovacuum_vacuum_threshold = 1000)");
+                jdbcTemplate.execute("ALTER TABLE embeddings ATTACH PARTITION " + partition
+                        + " FOR VALUES IN ('" + collection + "')");
+                log.info("Created embeddings partition {} for collection '{}'", partition, collection);
+            } catch (DataAccessException e) {
+                // Another instance may have attached it concurrently
+                if (!isAttached(partition)) {
+                    throw e;
+                }
+            }
+        }
+        knownCollections.add(collection);
+    }
+
+    /**
+     * Starts moving the rows of 'embeddings_legacy' once the application is ready, on a background thread,
+     * so a large legacy table does not delay startup. Until the migration is done, readers of the default
+     * collection also read the rows left in 'embeddings_legacy' (see {@link #isMigrating()}).
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startLegacyMigration() {
+        Thread.ofPlatform().daemon().name("embeddings-migration").start(() -> {
+            try {
+                migrateLegacyTable();
+            } catch (RuntimeException e) {
+                log.warn("Migration of embeddings_legacy failed, it continues on the next start", e);
+            }
+        });
+    }
+
+    /**
+     * Moves rows left in 'embeddings_legacy' (the table from before partitioning) into the partitioned table.
+     * Each batch is moved in one statement, so an interrupted migration simply continues on the next start.
+     * Rows of documents deleted meanwhile become orphans and are removed by the orphan sweeper.
+     *
+     * @return The number of moved embeddings.
+     */
+    int migrateLegacyTable() {
+        if (!isMigrating()) {
+            return 0;
+        }
+        // Planner estimate: exact enough for progress logs, and free unlike COUNT(*)
+        Long estimate = jdbcTemplate.queryForObject(
+                "SELECT GREATEST(reltuples, 0)::bigint FROM pg_class WHERE oid = 'embeddings_legacy'::regclass", Long.class);
+        log.info("Migrating about {} embeddings from embeddings_legacy into the partitioned embeddings table...", estimate);
+        // Legacy rows belong to documents that got the default collection when the column was added
+        ensurePartition(DEFAULT_COLLECTION);
+        long start = System.nanoTime();
+        int moved = 0;
+        int batches = 0;
+        do {
+            moved += jdbcTemplate.update("""
+                    WITH moved AS (
+                        DELETE FROM embeddings_legacy
+                        WHERE embedding_id IN (SELECT embedding_id FROM embeddings_legacy LIMIT ?)
+                        RETURNING embedding_id, embedding, text, metadata::jsonb AS metadata
+                    )
+                    INSERT INTO embeddings (embedding_id, collection, document_id, embedding, text, metadata)
+                    SELECT embedding_id, ?, metadata ->> 'documentId', embedding, text, metadata
+                    FROM moved
+                    WHERE metadata ->> 'documentId' IS NOT NULL
+                    """, MIGRATION_BATCH_SIZE, DEFAULT_COLLECTION);
+            if (++batches % MIGRATION_PROGRESS_BATCHES == 0) {
+                log.info("Migrated {} of about {} embeddings from embeddings_legacy ({} s)",
+                        moved, estimate, (System.nanoTime() - start) / 1_000_000_000);
+            }
+        } while (jdbcTemplate.queryForObject("SELECT EXISTS (SELECT 1 FROM embeddings_legacy)", Boolean.class));
+        // Readers stop looking at the legacy table first, then it is dropped
+        synchronized (this) {
+            migrating = false;
+        }
+        jdbcTemplate.execute("DROP TABLE embeddings_legacy");
+        log.info("Migrated {} embeddings into partition {} in {} s, dropped embeddings_legacy",
+                moved, partitionName(DEFAULT_COLLECTION), (System.nanoTime() - start) / 1_000_000_000);
+        return moved;
+    }
+
+    /**
+     * Whether rows of the default collection may still be in 'embeddings_legacy', not yet moved into the
+     * partitioned table. Readers then have to look there too; its rows have no collection and document_id
+     * columns, the document id is {@code metadata ->> 'documentId'} (indexed). Cheap after the first call.
+     */
+    public boolean isMigrating() {
+        Boolean current = migrating;
+        if (current == null) {
+            synchronized (this) {
+                if (migrating == null) {
+                    migrating = Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                            "SELECT to_regclass('embeddings_legacy') IS NOT NULL", Boolean.class));
+                }
+                current = migrating;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Vacuums (and analyzes) every partition whose dead tuples exceed {@code vacuum-dead-tuple-ratio} of its live
+     * tuples, one partition at a time. VACUUM only locks the partition it works on, and never blocks reads or writes.
+     */
+    @Scheduled(initialDelayString = "${docwhisperer.maintenance.partitions.interval:PT1H}",
+            fixedDelayString = "${docwhisperer.maintenance.partitions.interval:PT1H}")
+    public void vacuumPartitions() {
+        List<String> partitions = jdbcTemplate.queryForList("""
+                SELECT s.relname
+                FROM pg_inherits i
+                JOIN pg_stat_user_tables s ON s.relid = i.inhrelid
+                WHERE i.inhparent = 'embeddings'::regclass
+                AND s.n_dead_tup > GREATEST(1000, s.n_live_tup * ?)
+                """, String.class, vacuumDeadTupleRatio);
+        for (String partition : partitions) {
+            try {
+                long start = System.nanoTime();
+                jdbcTemplate.execute("VACUUM (ANALYZE) " + partition);
+                log.info("Vacuumed {} in {} ms", partition, (System.nanoTime() - start) / 1_000_000);
+            } catch (DataAccessException e) {
+                log.warn("Failed to vacuum {}", partition, e);
+            }
+        }
+    }
+
+    static String partitionName(String collection) {
+        return "embeddings_" + collection;
+    }
+
+    private boolean isAttached(String partition) {
+        return Boolean.TRUE.equals(jdbcTemplate.queryForObject("""
+                SELECT EXISTS (
+                    SELECT 1 FROM pg_inherits
+                    WHERE inhparent = 'embeddings'::regclass AND inhrelid = to_regclass(?)
+                )
+                """, Boolean.class, partition));
+    }
+}
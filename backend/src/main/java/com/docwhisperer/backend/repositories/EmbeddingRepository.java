@@ -0,0 +1,218 @@
+package com.docwhisperer.backend.repositories;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Direct SQL access to the partitioned 'embeddings' table: batched inserts, deleting by document, scanning for orphans.
+ * <p>
+ * Inserts always name the collection, so each row lands directly in its partition
+ * (created through {@link EmbeddingPartitions} beforehand). Lookups and deletes by document always filter on the
+ * collection too, so only its partition is scanned, and then use the {@code document_id} column, which is indexed
+ * in every partition.
+ * </p>
+ */
+@Repository
+public class EmbeddingRepository {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingPartitions partitions;
+
+    public EmbeddingRepository(JdbcTemplate jdbcTemplate, EmbeddingPartitions partitions) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.partitions = partitions;
+    }
+
+    /**
+     * Inserts the embeddings with their segments into the partition of {@code collection} as one JDBC batch.
+     * Every segment must carry its {@code documentId} metadata.
+     */
+    public void insertAll(String collection, List<Embedding> embeddings, List<TextSegment> segments) {
+        if (embeddings.size() != segments.size()) {
+            throw new IllegalArgumentException("Got " + embeddings.size() + " embeddings for " + segments.size() + " segments");
+        }
+        jdbcTemplate.batchUpdate("""
+                INSERT INTO embeddings (embedding_id, collection, document_id, embedding, text, metadata)
+                VALUES (?, ?, ?, ?::vector, ?, ?::jsonb)
+                """, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                TextSegment segment = segments.get(i);
+                ps.setObject(1, UUID.randomUUID());
+                ps.setString(2, collection);
+                ps.setString(3, segment.metadata().get("documentId"));
+                ps.setString(4, toVectorLiteral(embeddings.get(i).vector()));
+                ps.setString(5, segment.text());
+                ps.setString(6, toJson(segment.metadata().asMap()));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return segments.size();
+            }
+        });
+    }
+
+    /**
+     * Deletes the embeddings of all given documents of {@code collection} in one statement, scanning only its
+     * partition. Documents of other collections are left alone.
+     *
+     * @return The number of deleted embeddings.
+     */
+    public int deleteByDocumentIds(String collection, Collection<String> documentIds) {
+        if (documentIds.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update("DELETE FROM embeddings WHERE collection = ? AND document_id = ANY (?)", ps -> {
+            ps.setString(1, collection);
+            ps.setArray(2, ps.getConnection().createArrayOf("text", documentIds.toArray()));
+        });
+    }
+
+    /**
+     * Deletes at most {@code batchSize} embeddings of one document of {@code collection}. Used to remove large
+     * orphans in small steps, keeping each transaction (and the dead tuples it leaves for vacuum) short.
+     *
+     * @return The number of deleted embeddings; 0 once the document has none left.
+     */
+    public int deleteBatchByDocumentId(String collection, String documentId, int batchSize) {
+        return jdbcTemplate.update("""
+                DELETE FROM embeddings e
+                USING (SELECT embedding_id FROM embeddings WHERE collection = ? AND document_id = ? LIMIT ?) b
+                WHERE e.collection = ? AND e.embedding_id = b.embedding_id
+                """, collection, documentId, batchSize, collection);
+    }
+
+    /**
+     * Returns the collections that have a partition, in name order.
+     */
+    public List<String> findCollections() {
+        return jdbcTemplate.queryForList("""
+                SELECT substr(c.relname, length('embeddings_') + 1) AS collection
+                FROM pg_inherits i
+                JOIN pg_class c ON c.oid = i.inhrelid
+                WHERE i.inhparent = 'embeddings'::regclass
+                ORDER BY collection
+                """, String.class);
+    }
+
+    /**
+     * Returns the next {@code limit} distinct document ids of {@code collection} after {@code afterDocumentId}
+     * (in index order; "" to start at the first), each with whether it is an orphan: it still has embeddings
+     * but no row in the 'document' table, e.g. left behind by a crash during ingestion.
+     * <p>
+     * The ids are read by a loose index scan on the partition's {@code document_id} index: one index probe per
+     * distinct document instead of reading every embedding. Fewer than {@code limit} ids means the partition has
+     * been scanned to its end.
+     * </p>
+     */
+    public List<ScannedDocument> scanDocuments(String collection, String afterDocumentId, int limit) {
+        return jdbcTemplate.query("""
+                WITH RECURSIVE ids (document_id, n) AS (
+                    (SELECT document_id, 1 FROM embeddings
+                     WHERE collection = ? AND document_id > ?
+                     ORDER BY document_id LIMIT 1)
+                    UNION ALL
+                    SELECT (SELECT e.document_id FROM embeddings e
+                            WHERE e.collection = ? AND e.document_id > ids.document_id
+                            ORDER BY e.document_id LIMIT 1), ids.n + 1
+                    FROM ids
+                    WHERE ids.document_id IS NOT NULL AND ids.n < ?
+                )
+                SELECT ids.document_id, NOT EXISTS (SELECT 1 FROM document d WHERE d.id = ids.document_id) AS orphan
+                FROM ids
+                WHERE ids.document_id IS NOT NULL
+                ORDER BY ids.n
+                """, (rs, rowNum) -> new ScannedDocument(rs.getString("document_id"), rs.getBoolean("orphan")),
+                collection, afterDocumentId, collection, limit);
+    }
+
+    /**
+     * Returns the chunk texts of a document in document order, read from the partition of its collection
+     * (and from 'embeddings_legacy' while it is being migrated).
+     * Chunks stored before the chunk index was recorded are ordered by their character offset instead.
+     */
+    public List<String> findTextsByDocumentId(String documentId) {
+        if (partitions.isMigrating()) {
+            return jdbcTemplate.queryForList("""
+                    SELECT text
+                    FROM (
+                        SELECT text, metadata, embedding_id
+                        FROM embeddings
+                        WHERE collection = (SELECT collection FROM document WHERE id = ?)
+                        AND document_id = ?
+                        UNION ALL
+                        SELECT text, metadata, embedding_id
+                        FROM embeddings_legacy
+                        WHERE metadata ->> 'documentId' = ?
+                    ) chunks
+                    ORDER BY COALESCE((metadata ->> 'index')::int, (metadata ->> 'offset')::int), embedding_id
+                    """, String.class, documentId, documentId, documentId);
+        }
+        return jdbcTemplate.queryForList("""
+                SELECT text
+                FROM embeddings
+                WHERE collection = (SELECT collection FROM document WHERE id = ?)
+                AND document_id = ?
+                ORDER BY COALESCE((metadata ->> 'index')::int, (metadata ->> 'offset')::int), embedding_id
+                """, String.class, documentId, documentId);
+    }
+
+    /**
+     * Returns the document ids of the {@code limit} embeddings nearest to {@code vector} (cosine distance),
+     * across all collections. Used by the startup warm-up to load the HNSW index pages into the buffer cache.
+     */
+    public List<String> findNearestDocumentIds(float[] vector, int limit) {
+        return jdbcTemplate.queryForList("""
+                SELECT document_id FROM embeddings ORDER BY embedding <=> ?::vector LIMIT ?
+                """, String.class, toVectorLiteral(vector), limit);
+    }
+
+    /**
+     * A document's embeddings: the collection (partition) they are stored in and the document id.
+     */
+    public record DocumentRef(String collection, String documentId) {
+    }
+
+    /**
+     * A document id found in a partition by {@link #scanDocuments}, and whether its document row is missing.
+     */
+    public record ScannedDocument(String documentId, boolean orphan) {
+    }
+
+    /**
+     * Formats a vector as a pgvector literal, e.g. {@code [0.1,0.2,0.3]}.
+     */
+    public static String toVectorLiteral(float[] vector) {
+        StringBuilder sb = new StringBuilder(vector.length * 12).append('[');
+        for (int i = 0; i < vector.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(vector[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    private static String toJson(Map<String, ?> metadata) {
+        try {
+            return OBJECT_MAPPER.writeValueAsString(metadata);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Metadata cannot be serialized", e);
+        }
+    }
+}
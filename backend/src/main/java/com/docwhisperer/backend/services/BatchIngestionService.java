@@ -0,0 +1,462 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.documents.Document;
+import com.docwhisperer.backend.observability.PipelineObservations;
+import com.docwhisperer.backend.repositories.DocumentRepository;
+import com.docwhisperer.backend.repositories.EmbeddingPartitions;
+import com.docwhisperer.backend.repositories.EmbeddingRepository;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import org.apache.tika.Tika;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static com.docwhisperer.backend.observability.PipelineObservations.INGEST;
+
+/**
+ * Ingests many files (or the entries of ZIP archives) in one go.
+ * <p>
+ * How a batch is processed:
+ * <ul>
+ *     <li>Every file is parsed and split in parallel on the {@code ingest-parse} pool. At most
+ *     {@code max-parse-ahead} files of a batch are parsed (or being parsed) and not yet taken by the coordinator;
+ *     the next file is only submitted once a parsed one was taken, so parsing cannot run far ahead of embedding
+ *     and pile up the segments of many files in memory.</li>
+ *     <li>A single coordinator collects the segments of all files as they finish parsing and embeds/stores them
+ *     in shared cross-document batches of {@code embedding-batch-size} segments, so small files do not each pay
+ *     for their own embedding call and insert.</li>
+ *     <li>A file's metadata row is saved once its last segment is stored; completed files of the same batch are
+ *     saved together; if that fails, they are saved one by one, so only the offending file fails. Its result is
+ *     reported right away, so callers see per-file progress, and its summary is queued ({@link DocumentSummarizer}).</li>
+ *     <li>A failing file (unparseable, or part of a failed embedding batch) is reported as failed and its
+ *     already stored embeddings are removed; the rest of the batch continues.</li>
+ * </ul>
+ * Uploaded files are spooled to temporary files rather than kept in memory, and each is deleted once parsed.
+ * Batches waiting or in progress may hold at most {@code max-queued-size} of spooled files together.
+ * </p>
+ */
+@Service
+public class BatchIngestionService {
+
+    private static final Logger log = LoggerFactory.getLogger(BatchIngestionService.class);
+
+    private final IngestionPipeline ingestionPipeline;
+    private final DocumentRepository documentRepository;
+    private final EmbeddingRepository embeddingRepository;
+    private final DocumentSummarizer documentSummarizer;
+    private final PipelineObservations observations;
+    private final ExecutorService parseExecutor;
+    private final ExecutorService batchExecutor;
+    private final Tika tika = new Tika();
+    private final int embeddingBatchSize;
+    private final int maxParseAhead;
+    private final int maxFiles;
+    private final long maxUncompressedBytes;
+    private final long maxQueuedBytes;
+
+    /** Bytes of spooled files of batches submitted and not finished yet. */
+    private final AtomicLong queuedBytes = new AtomicLong();
+
+    public BatchIngestionService(IngestionPipeline ingestionPipeline,
+                                 DocumentRepository documentRepository,
+                                 EmbeddingRepository embeddingRepository,
+                                 DocumentSummarizer documentSummarizer,
+                                 PipelineObservations observations,
+                                 @Qualifier("ingestParseExecutor") ExecutorService parseExecutor,
+                                 @Qualifier("ingestBatchExecutor") ExecutorService batchExecutor,
+                                 @Value("${docwhisperer.ingest.batch.embedding-batch-size:256}") int embeddingBatchSize,
+                                 @Value("${docwhisperer.ingest.batch.max-parse-ahead:16}") int maxParseAhead,
+                                 @Value("${docwhisperer.ingest.batch.max-files:1000}") int maxFiles,
+                                 @Value("${docwhisperer.ingest.batch.max-uncompressed-size:512MB}") DataSize maxUncompressedSize,
+                                 @Value("${docwhisperer.ingest.batch.max-queued-size:2GB}") DataSize maxQueuedSize) {
+        this.ingestionPipeline = ingestionPipeline;
+        this.documentRepository = documentRepository;
+        this.embeddingRepository = embeddingRepository;
+        this.documentSummarizer = documentSummarizer;
+        this.observations = observations;
+        this.parseExecutor = parseExecutor;
+        this.batchExecutor = batchExecutor;
+        this.embeddingBatchSize = Math.max(1, embeddingBatchSize);
+        this.maxParseAhead = Math.max(1, maxParseAhead);
+        this.maxFiles = maxFiles;
+        this.maxUncompressedBytes = maxUncompressedSize.toBytes();
+        this.maxQueuedBytes = maxQueuedSize.toBytes();
+    }
+
+    /**
+     * Spools the uploaded files to temporary files, expanding ZIP archives into their entries.
+     * Directories, macOS resource forks ({@code __MACOSX/}) and hidden files inside archives are skipped.
+     * The temporary files are deleted by {@link #ingest}, or right away if this method fails.
+     *
+     * @throws ResponseStatusException (413) if the batch exceeds the configured number of files or uncompressed size.
+     * @throws IOException             If a file or archive cannot be read.
+     */
+    public List<IngestSource> expand(List<MultipartFile> files) throws IOException {
+        List<IngestSource> sources = new ArrayList<>();
+        try {
+            long totalBytes = 0;
+            for (MultipartFile file : files) {
+                if (file.isEmpty()) {
+                    continue;
+                }
+                if (isZip(file)) {
+                    try (ZipInputStream zip = new ZipInputStream(file.getInputStream())) {
+                        ZipEntry entry;
+                        while ((entry = zip.getNextEntry()) != null) {
+                            if (entry.isDirectory() || isIgnoredEntry(entry.getName())) {
+                                continue;
+                            }
+                            IngestSource source = spool(entry.getName(), tika.detect(entry.getName()), zip,
+                                    maxUncompressedBytes - totalBytes, sources);
+                            totalBytes += source.size();
+                        }
+                    }
+                } else {
+                    if (totalBytes + file.getSize() > maxUncompressedBytes) {
+                        throw tooLarge();
+                    }
+                    try (InputStream inputStream = file.getInputStream()) {
+                        IngestSource source = spool(file.getOriginalFilename(), file.getContentType(), inputStream,
+                                maxUncompressedBytes - totalBytes, sources);
+                        totalBytes += source.size();
+                    }
+                }
+            }
+            return sources;
+        } catch (IOException | RuntimeException e) {
+            sources.forEach(IngestSource::delete);
+            throw e;
+        }
+    }
+
+    /**
+     * Runs {@link #ingest} on the batch pool. The temporary files of the sources are deleted if it is rejected.
+     *
+     * @throws ResponseStatusException (429) if too many batches, or too many bytes of files, are already waiting.
+     */
+    public CompletableFuture<Void> submit(List<IngestSource> sources, String collection, Consumer<IngestResult> listener) {
+        long bytes = sources.stream().mapToLong(IngestSource::size).sum();
+        if (queuedBytes.addAndGet(bytes) > maxQueuedBytes) {
+            queuedBytes.addAndGet(-bytes);
+            sources.forEach(IngestSource::delete);
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too much data of batch uploads in progress, try again later");
+        }
+        try {
+            return CompletableFuture.runAsync(() -> ingest(sources, collection, listener), batchExecutor)
+                    .whenComplete((ignored, error) -> queuedBytes.addAndGet(-bytes));
+        } catch (RejectedExecutionException e) {
+            queuedBytes.addAndGet(-bytes);
+            sources.forEach(IngestSource::delete);
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS, "Too many batch uploads in progress, try again later");
+        }
+    }
+
+    /**
+     * Ingests all sources into {@code collection} (the default collection if null/blank), calling {@code listener}
+     * once per source (from the calling thread) as soon as it is done.
+     */
+    public void ingest(List<IngestSource> sources, String collection, Consumer<IngestResult> listener) {
+        String validCollection = EmbeddingPartitions.requireValidCollection(collection);
+        observations.pipeline(INGEST + ".batch", () -> {
+            doIngest(sources, validCollection, listener);
+            return null;
+        });
+    }
+
+    private void doIngest(List<IngestSource> sources, String collection, Consumer<IngestResult> listener) {
+        log.info("Starting batch ingestion of {} files into collection '{}'", sources.size(), collection);
+        CompletionService<ParsedFile> parsing = new ExecutorCompletionService<>(parseExecutor);
+        // Sources are submitted for parsing in order; the next one only once a parsed file was taken
+        int submitted = 0;
+        while (submitted < Math.min(maxParseAhead, sources.size())) {
+            IngestSource source = sources.get(submitted++);
+            parsing.submit(() -> parse(source));
+        }
+
+        // Documents whose segments are not all stored yet, keyed by documentId
+        Map<String, PendingDocument> pending = new LinkedHashMap<>();
+        List<TextSegment> buffer = new ArrayList<>();
+        int ingested = 0;
+
+        for (int i = 0; i < sources.size(); i++) {
+            ParsedFile parsed;
+            try {
+                parsed = parsing.take().get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(pending.values(), "Batch ingestion was interrupted", listener);
+                sources.subList(submitted, sources.size()).forEach(IngestSource::delete);
+                return;
+            } catch (ExecutionException e) {
+                // parse() reports parser failures in its result, so this is a VM error such as an OutOfMemoryError;
+                // still leave nothing behind
+                fail(pending.values(), "Batch ingestion failed", listener);
+                deleteEmbeddings(collection, pending.keySet());
+                sources.subList(submitted, sources.size()).forEach(IngestSource::delete);
+                throw new IllegalStateException("Parsing worker failed", e.getCause());
+            }
+            if (submitted < sources.size()) {
+                IngestSource next = sources.get(submitted++);
+                parsing.submit(() -> parse(next));
+            }
+
+            if (parsed.error() != null) {
+                log.warn("Failed to parse '{}': {}", parsed.source().name(), parsed.error().getMessage());
+                listener.accept(IngestResult.failed(parsed.source().name(), describe(parsed.error())));
+                continue;
+            }
+
+            PendingDocument document = new PendingDocument(parsed, collection);
+            if (parsed.segments().isEmpty()) {
+                ingested += complete(collection, List.of(document), listener);
+                continue;
+            }
+            pending.put(parsed.documentId(), document);
+            buffer.addAll(parsed.segments());
+            while (buffer.size() >= embeddingBatchSize) {
+                List<TextSegment> batch = new ArrayList<>(buffer.subList(0, embeddingBatchSize));
+                buffer.subList(0, embeddingBatchSize).clear();
+                ingested += flush(collection, batch, pending, buffer, listener);
+            }
+        }
+        if (!buffer.isEmpty()) {
+            ingested += flush(collection, new ArrayList<>(buffer), pending, buffer, listener);
+        }
+        log.info("Finished batch ingestion: {} of {} files ingested", ingested, sources.size());
+    }
+
+    /**
+     * Parses and splits one file, then deletes its temporary file. Parser failures, including the errors a parser
+     * may throw on a malicious or unusual file ({@link StackOverflowError} on deep nesting, {@link LinkageError}
+     * when a format needs an optional library), are returned in {@link ParsedFile#error()}, so they fail this file
+     * only. Other errors, such as an {@link OutOfMemoryError}, are not contained and abort the batch.
+     */
+    private ParsedFile parse(IngestSource source) {
+        try (InputStream inputStream = source.openStream()) {
+            ParsedDocument document = ingestionPipeline.parse(inputStream);
+            String documentId = UUID.randomUUID().toString();
+            List<TextSegment> segments = ingestionPipeline.split(document, documentId);
+            return new ParsedFile(source, documentId, segments, document.text().length(), document.pageCount(), null);
+        } catch (Exception | StackOverflowError | LinkageError e) {
+            return new ParsedFile(source, null, List.of(), 0, 0, e);
+        } finally {
+            source.delete();
+        }
+    }
+
+    /**
+     * Embeds and stores one shared batch, then saves the documents whose last segment was in it.
+     *
+     * @return The number of documents completed by this batch.
+     */
+    private int flush(String collection, List<TextSegment> batch, Map<String, PendingDocument> pending,
+                      List<TextSegment> buffer, Consumer<IngestResult> listener) {
+        Map<String, Integer> segmentsPerDocument = new LinkedHashMap<>();
+        batch.forEach(segment -> segmentsPerDocument.merge(documentId(segment), 1, Integer::sum));
+
+        try {
+            List<Embedding> embeddings = ingestionPipeline.embed(batch);
+            ingestionPipeline.persist(collection, embeddings, batch);
+        } catch (RuntimeException e) {
+            log.warn("Failed to store an embedding batch of {} segments from {} documents",
+                    batch.size(), segmentsPerDocument.size(), e);
+            buffer.removeIf(segment -> segmentsPerDocument.containsKey(documentId(segment)));
+            List<PendingDocument> failed = segmentsPerDocument.keySet().stream().map(pending::remove).toList();
+            deleteEmbeddings(collection, segmentsPerDocument.keySet());
+            fail(failed, "Failed to store embeddings: " + describe(e), listener);
+            return 0;
+        }
+
+        List<PendingDocument> completed = new ArrayList<>();
+        segmentsPerDocument.forEach((documentId, count) -> {
+            PendingDocument document = pending.get(documentId);
+            document.remainingSegments -= count;
+            if (document.remainingSegments == 0) {
+                completed.add(pending.remove(documentId));
+            }
+        });
+        return complete(collection, completed, listener);
+    }
+
+    /**
+     * Saves the metadata rows of fully stored documents in one go and reports them.
+     */
+    private int complete(String collection, List<PendingDocument> completed, Consumer<IngestResult> listener) {
+        if (completed.isEmpty()) {
+            return 0;
+        }
+        List<Document> entities = completed.stream().map(PendingDocument::toEntity).toList();
+        try {
+            observations.stage(INGEST, "save-metadata", () -> documentRepository.saveAll(entities));
+        } catch (RuntimeException e) {
+            if (completed.size() > 1) {
+                // saveAll is one transaction: find the offending row(s) so only their files fail
+                log.warn("Failed to save metadata of {} documents together, saving them one by one", entities.size(), e);
+                int saved = 0;
+                for (PendingDocument document : completed) {
+                    saved += complete(collection, List.of(document), listener);
+                }
+                return saved;
+            }
+            log.warn("Failed to save metadata of document {}", entities.get(0).getId(), e);
+            deleteEmbeddings(collection, List.of(entities.get(0).getId()));
+            fail(completed, "Failed to save document metadata: " + describe(e), listener);
+            return 0;
+        }
+        for (int i = 0; i < completed.size(); i++) {
+            PendingDocument document = completed.get(i);
+            log.info("Ingested '{}' as documentId {}: {} chars, {} segments",
+                    document.parsed.source().name(), document.parsed.documentId(),
+                    document.parsed.textLength(), document.parsed.segments().size());
+            listener.accept(IngestResult.ingested(document.parsed.source().name(), entities.get(i)));
+            documentSummarizer.schedule(document.parsed.documentId());
+        }
+        return completed.size();
+    }
+
+    private static void fail(Collection<PendingDocument> documents, String error, Consumer<IngestResult> listener) {
+        documents.forEach(document -> listener.accept(IngestResult.failed(document.parsed.source().name(), error)));
+    }
+
+    /**
+     * Removes the embeddings stored by earlier batches for documents that ended up failing.
+     */
+    private void deleteEmbeddings(String collection, Collection<String> documentIds) {
+        try {
+            embeddingRepository.deleteByDocumentIds(collection, documentIds);
+        } catch (RuntimeException e) {
+            // Left for the orphan sweeper
+            log.warn("Failed to clean up embeddings of failed documents {}", documentIds, e);
+        }
+    }
+
+    private void add(List<IngestSource> sources, IngestSource source) {
+        if (sources.size() >= maxFiles) {
+            throw new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                    "A batch may contain at most " + maxFiles + " files");
+        }
+        sources.add(source);
+    }
+
+    /**
+     * Copies a file (or ZIP entry) to a temporary file, refusing to write more than {@code limit} bytes
+     * (protects against ZIP bombs), and adds it to {@code sources}.
+     */
+    private IngestSource spool(String name, String contentType, InputStream inputStream, long limit,
+                               List<IngestSource> sources) throws IOException {
+        Path file = Files.createTempFile("docwhisperer-batch-", ".upload");
+        IngestSource source;
+        try (OutputStream outputStream = Files.newOutputStream(file)) {
+            byte[] buffer = new byte[8192];
+            long size = 0;
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                size += read;
+                if (size > limit) {
+                    throw tooLarge();
+                }
+                outputStream.write(buffer, 0, read);
+            }
+            source = new IngestSource(name, contentType, file, size);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(file);
+            throw e;
+        }
+        try {
+            add(sources, source);
+        } catch (RuntimeException e) {
+            source.delete();
+            throw e;
+        }
+        return source;
+    }
+
+    private ResponseStatusException tooLarge() {
+        return new ResponseStatusException(HttpStatus.PAYLOAD_TOO_LARGE,
+                "A batch may contain at most " + DataSize.ofBytes(maxUncompressedBytes).toMegabytes() + " MB of (uncompressed) files");
+    }
+
+    private static boolean isZip(MultipartFile file) {
+        String name = file.getOriginalFilename();
+        String contentType = file.getContentType();
+        return (name != null && name.toLowerCase().endsWith(".zip"))
+                || "application/zip".equals(contentType)
+                || "application/x-zip-compressed".equals(contentType);
+    }
+
+    private static boolean isIgnoredEntry(String name) {
+        String fileName = name.substring(name.lastIndexOf('/') + 1);
+        return name.startsWith("__MACOSX/") || fileName.startsWith(".");
+    }
+
+    private static String documentId(TextSegment segment) {
+        return segment.metadata().get("documentId");
+    }
+
+    private static String describe(Throwable e) {
+        return e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+    }
+
+    private record ParsedFile(IngestSource source, String documentId, List<TextSegment> segments,
+                              int textLength, int pageCount, Throwable error) {
+    }
+
+    /**
+     * A parsed document waiting for its segments to be stored.
+     * Only touched by the coordinator thread.
+     */
+    private static final class PendingDocument {
+
+        private final ParsedFile parsed;
+        private final String collection;
+        private int remainingSegments;
+
+        PendingDocument(ParsedFile parsed, String collection) {
+            this.parsed = parsed;
+            this.collection = collection;
+            this.remainingSegments = parsed.segments().size();
+        }
+
+        Document toEntity() {
+            return new Document(
+                    parsed.documentId(),
+                    parsed.source().name(),
+                    parsed.source().contentType(),
+                    parsed.source().size(),
+                    LocalDateTime.now(),
+                    parsed.pageCount(),
+                    collection
+            );
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.docwhisperer.backend.services;
+
+import java.util.List;
+
+/**
+ * Result of a conversational chat request.
+ *
+ * @param answer    The AI's response.
+ * @param sessionId The conversation id; the client sends it back with the next question to keep context.
+ * @param sources   The pages the answer was based on, best match first (one entry per document page).
+ */
+public record ChatAnswer(String answer, String sessionId, List<SourceReference> sources) {
+}
@@ -1,22 +1,47 @@
 package com.docwhisperer.backend.services;
 
+import com.docwhisperer.backend.conversations.ChatSession;
+import com.docwhisperer.backend.documents.DocumentSummary;
+import com.docwhisperer.backend.documents.RetrievedChunk;
+import com.docwhisperer.backend.llm.GenerationPriority;
+import com.docwhisperer.backend.llm.GenerationRejectedException;
+import com.docwhisperer.backend.llm.GenerationScheduler;
+import com.docwhisperer.backend.observability.PipelineObservations;
+import com.docwhisperer.backend.repositories.DocumentSummaryRepository;
+import com.docwhisperer.backend.repositories.EmbeddingPartitions;
 import dev.langchain4j.data.embedding.Embedding;
-import dev.langchain4j.data.message.SystemMessage;
-import dev.langchain4j.data.message.UserMessage;
-import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import static com.docwhisperer.backend.observability.PipelineObservations.CHAT;
 
 /**
  * Service for handling chat interactions with document context (RAG).
  * <p>
  * This service uses direct SQL queries for vector similarity search with proper
  * document filtering, bypassing potential issues with LangChain4j's filter API.
+ * Conversation memory (recent turns, summaries, retrieval reuse) is delegated to {@link ConversationService},
+ * and LLM calls go through the {@link GenerationScheduler} as {@link GenerationPriority#INTERACTIVE} work.
+ * Every retrieved chunk carries its document and page, which are returned as the answer's sources.
+ * </p>
+ * <p>
+ * A plain request to summarize a document is answered from its precomputed summary ({@link DocumentSummarizer}),
+ * without retrieval or an LLM call; until the summary exists it goes through RAG like any other question.
  * </p>
  */
 @Service
@@ -24,125 +49,363 @@ public class ChatService {
 
     private static final Logger log = LoggerFactory.getLogger(ChatService.class);
 
-    private final ChatLanguageModel chatLanguageModel;
+    /**
+     * Wraps a nearest-neighbour query (its rows: text, score, doc_id, page) to add the name of each chunk's document.
+     */
+    private static final String NEAREST_WITH_SOURCE = """
+            SELECT nearest.*, d.name as doc_name
+            FROM (%s) nearest
+            LEFT JOIN document d ON d.id = nearest.doc_id
+            ORDER BY nearest.score DESC
+            """;
+
+    /**
+     * Replaces the 'embeddings' table in queries while rows of the default collection are still being moved out of
+     * 'embeddings_legacy' (see {@link EmbeddingPartitions#isMigrating()}), so their documents stay searchable.
+     */
+    private static final String EMBEDDINGS_WITH_LEGACY = """
+            (SELECT collection, document_id, embedding, text, metadata FROM embeddings
+             UNION ALL
+             SELECT 'default', metadata ->> 'documentId', embedding, text, metadata FROM embeddings_legacy) embeddings""";
+
+    /**
+     * Questions that ask for a summary of the whole document and nothing else, e.g. "Summarize this document",
+     * "Can you give me a short overview?" or "What is this document about?". Questions about a specific part
+     * ("Summarize the payment terms") do not match.
+     */
+    private static final Pattern SUMMARY_REQUEST = Pattern.compile(
+            "^(?:please\\s+)?(?:(?:can|could|would) you\\s+)?(?:(?:give|write)(?: me)?\\s+)?(?:an?\\s+)?"
+                    + "(?:short\\s+|brief\\s+|quick\\s+)?"
+                    + "(?:summar(?:y|ize|ise)(?:\\s+(?:it|the\\s+(?:key|main)\\s+points))?|overview|tl;?dr)"
+                    + "(?:\\s+(?:of\\s+)?(?:this|the)\\s+(?:document|doc|file|text|pdf))?(?:,?\\s+please)?\\s*[.?!]*$"
+                    + "|^what(?:'s| is) (?:this|the) (?:document|doc|file|text|pdf) about\\s*[.?!]*$",
+            Pattern.CASE_INSENSITIVE);
+
+    private final GenerationScheduler generationScheduler;
     private final EmbeddingModel embeddingModel;
     private final JdbcTemplate jdbcTemplate;
+    private final EmbeddingPartitions embeddingPartitions;
+    private final ConversationService conversationService;
+    private final DocumentSummaryRepository documentSummaryRepository;
+    private final PipelineObservations observations;
 
-    public ChatService(ChatLanguageModel chatLanguageModel,
+    public ChatService(GenerationScheduler generationScheduler,
                        EmbeddingModel embeddingModel,
-                       JdbcTemplate jdbcTemplate) {
-        this.chatLanguageModel = chatLanguageModel;
+                       JdbcTemplate jdbcTemplate,
+                       EmbeddingPartitions embeddingPartitions,
+                       ConversationService conversationService,
+                       DocumentSummaryRepository documentSummaryRepository,
+                       PipelineObservations observations) {
+        this.generationScheduler = generationScheduler;
         this.embeddingModel = embeddingModel;
         this.jdbcTemplate = jdbcTemplate;
+        this.embeddingPartitions = embeddingPartitions;
+        this.conversationService = conversationService;
+        this.documentSummaryRepository = documentSummaryRepository;
+        this.observations = observations;
     }
 
     /**
      * Answers a user's question using RAG (Retrieval-Augmented Generation).
+     * <p>
+     * The whole request is recorded as one {@code docwhisperer.chat} observation, with a child
+     * observation per stage (count check, embed, vector search, prompt build, LLM generate).
+     * </p>
      *
      * @param question   The user's question.
-     * @param documentId The ID of the document to scope the search to (optional).
+     * @param documentId The ID of the document (in the default collection) to scope the search to (optional).
      * @return The AI's response.
+     * @throws GenerationRejectedException if the LLM is saturated (HTTP 429).
      */
     public String answer(String question, String documentId) {
-        log.info("Received question: '{}' for documentId: '{}'", question, documentId);
+        return observations.pipeline(CHAT,
+                () -> doAnswer(question, EmbeddingPartitions.DEFAULT_COLLECTION, documentId, null)).answer();
+    }
+
+    /**
+     * Answers a question as part of a conversation.
+     * <p>
+     * The session's summary and recent turns are included in the prompt, and if the question is a close
+     * follow-up of the previous one (same document, similar embedding) the previous retrieval is reused
+     * instead of running a new vector search.
+     * </p>
+     *
+     * @param question   The user's question.
+     * @param documentId The ID of the document (in the default collection) to scope the search to (optional).
+     * @param sessionId  The conversation to continue; a new one is started if null or blank.
+     * @return The AI's response together with its sources and the session id to send with the next question.
+     * @throws GenerationRejectedException if the LLM is saturated (HTTP 429).
+     * @see #answer(String, String, String, String)
+     */
+    public ChatAnswer answer(String question, String documentId, String sessionId) {
+        return answer(question, EmbeddingPartitions.DEFAULT_COLLECTION, documentId, sessionId);
+    }
+
+    /**
+     * Answers a question within one collection (tenant): only that collection's partition is searched, and
+     * a document of another collection is treated as having no content.
+     *
+     * @param question   The user's question.
+     * @param collection The collection (tenant) to search; null/blank for the default collection.
+     * @param documentId The ID of a document of that collection to scope the search to (optional).
+     * @param sessionId  The conversation to continue; a new one is started if null or blank.
+     * @return The AI's response together with its sources and the session id to send with the next question.
+     * @throws GenerationRejectedException if the LLM is saturated (HTTP 429).
+     * @throws org.springframework.web.server.ResponseStatusException (400) if the collection name is invalid.
+     */
+    public ChatAnswer answer(String question, String collection, String documentId, String sessionId) {
+        String validCollection = EmbeddingPartitions.requireValidCollection(collection);
+        ChatSession session = conversationService.openSession(sessionId);
+        return observations.pipeline(CHAT, () -> doAnswer(question, validCollection, documentId, session));
+    }
+
+    private ChatAnswer doAnswer(String question, String collection, String documentId, ChatSession session) {
+        if (log.isDebugEnabled()) {
+            log.debug("Received question: '{}' for collection: '{}', documentId: '{}', sessionId: '{}'",
+                    question, collection, documentId, session == null ? null : session.getId());
+        }
+        // Retrieval reuse is keyed by collection and document, so a session never reuses chunks across collections
+        String retrievalScope = collection + "/" + Objects.requireNonNullElse(documentId, "");
+        RetrievalSummary summary = new RetrievalSummary();
+        String sessionId = session == null ? null : session.getId();
+        String outcome = "error";
 
         try {
+            // Summary requests are answered from the precomputed summary, if it is ready
+            if (documentId != null && isSummaryRequest(question)) {
+                Optional<DocumentSummary> stored = observations.stage(CHAT, "summary-lookup",
+                        () -> documentSummaryRepository.findByDocumentId(collection, documentId));
+                if (stored.isPresent()) {
+                    String response = stored.get().summary();
+                    if (session != null) {
+                        conversationService.recordTurn(session, question, response, retrievalScope, null, List.of());
+                    }
+                    outcome = "summary";
+                    observations.recordAnswered();
+                    return new ChatAnswer(response, sessionId, List.of());
+                }
+            }
+
             // Diagnostic check: Verify if embeddings exist for this document
             if (documentId != null) {
-                Integer count = jdbcTemplate.queryForObject(
-                    "SELECT COUNT(*) FROM embeddings WHERE metadata ->> 'documentId' = ?",
+                // The collection prunes the query to that collection's partition
+                Integer count = observations.stage(CHAT, "count-check", () -> jdbcTemplate.queryForObject(
+                    "SELECT COUNT(*) FROM " + embeddingsTable(collection) + " WHERE collection = ? AND document_id = ?",
                     Integer.class,
-                    documentId
-                );
-                log.info("Diagnostic: Found {} existing embeddings for documentId: {}", count, documentId);
+                    collection, documentId
+                ));
+                log.debug("Diagnostic: Found {} existing embeddings for documentId: {}", count, documentId);
 
                 if (count != null && count == 0) {
-                    log.warn("Diagnostic: No embeddings found for this document! It might have been uploaded incorrectly.");
-                    return "I apologize, but this document seems to be empty or was not processed correctly. Please try deleting and re-uploading it.";
+                    log.warn("Diagnostic: No embeddings found for documentId {}! It might have been uploaded incorrectly.", documentId);
+                    outcome = "empty-document";
+                    return new ChatAnswer("I apologize, but this document seems to be empty or was not processed correctly. Please try deleting and re-uploading it.",
+                            sessionId, List.of());
                 }
             }
 
             // 1. Embed the user's question
-            Embedding questionEmbedding = embeddingModel.embed(question).content();
-            String embeddingVector = embeddingToString(questionEmbedding);
+            Embedding questionEmbedding = observations.stage(CHAT, "embed",
+                    () -> embeddingModel.embed(question).content());
 
-            // 2. Search using direct SQL with proper filtering
+            // 2. Reuse the previous turn's retrieval for a close follow-up, otherwise
+            // search using direct SQL with proper filtering
             // Using low minScore (0.0) since cosine similarity scores vary widely
-            List<String> relevantTexts = searchWithFilter(embeddingVector, documentId, 5, 0.0);
-            log.info("Found {} relevant segments", relevantTexts.size());
+            List<RetrievedChunk> reused = session == null ? null : conversationService
+                    .reusableRetrieval(session, retrievalScope, questionEmbedding.vector())
+                    .orElse(null);
+            List<RetrievedChunk> chunks;
+            if (reused != null) {
+                chunks = reused;
+                summary.reused = true;
+            } else {
+                String embeddingVector = embeddingToString(questionEmbedding);
+                chunks = observations.stage(CHAT, "vector-search",
+                        () -> searchWithFilter(embeddingVector, collection, documentId, 5, 0.0, summary));
+            }
+            observations.recordRetrievedChunks(chunks.size());
 
             // 3. Handle case with no relevant information
-            if (relevantTexts.isEmpty()) {
-                log.warn("No relevant segments found for question: '{}'", question);
-                return "I apologize, but I couldn't find any relevant information in this document to answer your question. " +
-                       "The document might be empty or the content might not be indexable.";
+            if (chunks.isEmpty()) {
+                outcome = "no-context";
+                return new ChatAnswer("I apologize, but I couldn't find any relevant information in this document to answer your question. " +
+                       "The document might be empty or the content might not be indexable.", sessionId, List.of());
             }
+            List<String> relevantTexts = chunks.stream().map(RetrievedChunk::text).toList();
 
-            // 4. Construct Context from retrieved segments
-            String context = String.join("\n\n", relevantTexts);
-
-            // 5. Create Prompt with Context
-            String systemPrompt = "You are a helpful document assistant. Answer the user's question based ONLY on the provided context below. " +
-                    "If the context doesn't contain the answer, say so.\n\n" +
-                    "Context:\n" + context;
+            // 4. Construct Context from retrieved segments and 5. Create Prompt with Context
+            List<ChatMessage> messages = observations.stage(CHAT, "prompt-build",
+                    () -> conversationService.buildMessages(session, buildSystemPrompt(relevantTexts), question));
+            summary.promptChars = promptSize(messages);
+            observations.recordPromptSize(summary.promptChars);
 
             // 6. Generate Response
-            log.info("Sending request to LLM...");
-            String response = chatLanguageModel.generate(
-                    SystemMessage.from(systemPrompt),
-                    UserMessage.from(question)
-            ).content().text();
-            log.info("Received response from LLM");
+            log.debug("Sending request to LLM...");
+            String response = observations.stage(CHAT, "llm-generate",
+                    () -> generationScheduler.generate(GenerationPriority.INTERACTIVE, messages).content().text());
 
-            return response;
+            if (session != null) {
+                conversationService.recordTurn(session, question, response,
+                        retrievalScope, questionEmbedding.vector(), chunks);
+            }
+            outcome = "answered";
+            observations.recordAnswered();
+            return new ChatAnswer(response, sessionId, sources(chunks));
 
+        } catch (GenerationRejectedException e) {
+            // Admission control: let the 429 reach the client instead of wrapping it as a server error
+            outcome = "rejected";
+            throw e;
         } catch (Exception e) {
             log.error("Error processing chat request", e);
             throw new RuntimeException("Failed to generate answer", e);
+        } finally {
+            // One aggregated line per request instead of one line per retrieved chunk
+            log.info("Chat request {}: collection={}, documentId={}, questionChars={}, chunks={}, documents={}, scores=[{}..{}], reusedRetrieval={}, promptChars={}",
+                    outcome, collection, documentId, question.length(), summary.chunks, summary.documentIds.size(),
+                    summary.formatMinScore(), summary.formatMaxScore(), summary.reused, summary.promptChars);
+        }
+    }
+
+    static boolean isSummaryRequest(String question) {
+        return SUMMARY_REQUEST.matcher(question.strip()).matches();
+    }
+
+    private String buildSystemPrompt(List<String> relevantTexts) {
+        String context = String.join("\n\n", relevantTexts);
+        return "You are a helpful document assistant. Answer the user's question based ONLY on the provided context below. " +
+                "If the context doesn't contain the answer, say so.\n\n" +
+                "Context:\n" + context;
+    }
+
+    /**
+     * One source per document page, best score first. Chunks come ordered by score, so the first chunk seen
+     * for a page is its best one.
+     */
+    static List<SourceReference> sources(List<RetrievedChunk> chunks) {
+        Map<List<Object>, SourceReference> byPage = new LinkedHashMap<>();
+        for (RetrievedChunk chunk : chunks) {
+            byPage.putIfAbsent(List.of(chunk.documentId(), Objects.requireNonNullElse(chunk.page(), 0)),
+                    SourceReference.of(chunk));
         }
+        return new ArrayList<>(byPage.values());
+    }
+
+    private static int promptSize(List<ChatMessage> messages) {
+        int size = 0;
+        for (ChatMessage message : messages) {
+            size += message.text().length();
+        }
+        return size;
     }
 
     /**
      * Performs vector similarity search with document filtering using direct SQL.
      * This bypasses potential issues with LangChain4j's filter API in version 0.30.0.
+     * <p>
+     * Rows are aggregated into {@code summary} rather than logged one by one;
+     * text previews are only built when DEBUG logging is enabled.
+     * The nearest chunks are selected first and only then joined with their document's name,
+     * so the join never gets in the way of the HNSW index scan.
+     * Searches within one document skip the HNSW index and rank all of the document's chunks exactly.
+     * </p>
      */
-    private List<String> searchWithFilter(String embeddingVector, String documentId, int maxResults, double minScore) {
+    private List<RetrievedChunk> searchWithFilter(String embeddingVector, String collection, String documentId, int maxResults, double minScore,
+                                          RetrievalSummary summary) {
         String sql;
         Object[] params;
 
         if (documentId != null && !documentId.trim().isEmpty()) {
-            // Query WITH document filter - only search within the specific document
-            sql = """
-                SELECT text, 1 - (embedding <=> ?::vector) as score, metadata ->> 'documentId' as doc_id
-                FROM embeddings
-                WHERE metadata ->> 'documentId' = ?
-                AND 1 - (embedding <=> ?::vector) >= ?
+            // Query WITH document filter - only search within the specific document,
+            // in the partition of the collection (pruned at planning time).
+            // Exact search: the document's chunks are read through the document_id index and ranked by distance.
+            // Through the HNSW index, the filter would only apply to the hnsw.ef_search (40) nearest chunks
+            // of the whole partition, which often contain none of the document's chunks.
+            sql = NEAREST_WITH_SOURCE.formatted("""
+                WITH chunks AS MATERIALIZED (
+                    SELECT text, embedding, document_id, metadata
+                    FROM %s
+                    WHERE collection = ?
+                    AND document_id = ?
+                )
+                SELECT text, 1 - (embedding <=> ?::vector) as score, document_id as doc_id, metadata ->> 'page' as page
+                FROM chunks
+                WHERE 1 - (embedding <=> ?::vector) >= ?
                 ORDER BY embedding <=> ?::vector
                 LIMIT ?
-                """;
-            params = new Object[]{embeddingVector, documentId, embeddingVector, minScore, embeddingVector, maxResults};
+                """.formatted(embeddingsTable(collection)));
+            params = new Object[]{collection, documentId, embeddingVector, embeddingVector, minScore, embeddingVector, maxResults};
         } else {
-            // Query WITHOUT filter - search all documents
-            sql = """
-                SELECT text, 1 - (embedding <=> ?::vector) as score, metadata ->> 'documentId' as doc_id
-                FROM embeddings
-                WHERE 1 - (embedding <=> ?::vector) >= ?
+            // Query WITHOUT document filter - search all documents of the collection (its partition only)
+            sql = NEAREST_WITH_SOURCE.formatted("""
+                SELECT text, 1 - (embedding <=> ?::vector) as score, document_id as doc_id, metadata ->> 'page' as page
+                FROM %s
+                WHERE collection = ?
+                AND 1 - (embedding <=> ?::vector) >= ?
                 ORDER BY embedding <=> ?::vector
                 LIMIT ?
-                """;
-            params = new Object[]{embeddingVector, embeddingVector, minScore, embeddingVector, maxResults};
+                """.formatted(embeddingsTable(collection)));
+            params = new Object[]{embeddingVector, collection, embeddingVector, minScore, embeddingVector, maxResults};
         }
 
+        boolean debug = log.isDebugEnabled();
         return jdbcTemplate.query(sql, (rs, rowNum) -> {
             String text = rs.getString("text");
             double score = rs.getDouble("score");
             String docId = rs.getString("doc_id");
-            log.info("Retrieved chunk from documentId: {}, score: {}, text preview: {}...",
-                    docId, score, text.substring(0, Math.min(50, text.length())));
-            return text;
+            String page = rs.getString("page");
+            summary.add(docId, score);
+            if (debug) {
+                log.debug("Retrieved chunk from documentId: {}, page: {}, score: {}, text preview: {}...",
+                        docId, page, score, text.substring(0, Math.min(50, text.length())));
+            }
+            return new RetrievedChunk(text, docId, rs.getString("doc_name"), page == null ? null : Integer.valueOf(page), score);
         }, params);
     }
 
+    /**
+     * The 'embeddings' table, or during the legacy migration, for the default collection, the union with the rows
+     * not moved yet.
+     */
+    private String embeddingsTable(String collection) {
+        return EmbeddingPartitions.DEFAULT_COLLECTION.equals(collection) && embeddingPartitions.isMigrating()
+                ? EMBEDDINGS_WITH_LEGACY
+                : "embeddings";
+    }
+
+    /**
+     * Per-request aggregate of the retrieval step, logged once at the end of {@link #answer}.
+     */
+    private static final class RetrievalSummary {
+        private final Set<String> documentIds = new HashSet<>();
+        private int chunks;
+        private double minScore = Double.NaN;
+        private double maxScore = Double.NaN;
+        private int promptChars;
+        private boolean reused;
+
+        void add(String documentId, double score) {
+            chunks++;
+            if (documentId != null) {
+                documentIds.add(documentId);
+            }
+            minScore = chunks == 1 ? score : Math.min(minScore, score);
+            maxScore = chunks == 1 ? score : Math.max(maxScore, score);
+        }
+
+        String formatMinScore() {
+            return format(minScore);
+        }
+
+        String formatMaxScore() {
+            return format(maxScore);
+        }
+
+        private static String format(double score) {
+            return Double.isNaN(score) ? "-" : String.format(Locale.ROOT, "%.3f", score);
+        }
+    }
+
     /**
      * Converts a LangChain4j Embedding to PostgreSQL vector string format.
      */
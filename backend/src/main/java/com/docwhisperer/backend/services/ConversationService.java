@@ -0,0 +1,150 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.conversations.ChatSession;
+import com.docwhisperer.backend.conversations.ChatTurn;
+import com.docwhisperer.backend.documents.RetrievedChunk;
+import com.docwhisperer.backend.llm.GenerationPriority;
+import com.docwhisperer.backend.llm.GenerationRejectedException;
+import com.docwhisperer.backend.llm.GenerationScheduler;
+import com.docwhisperer.backend.repositories.ConversationStore;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Manages server-side conversation memory for {@link ChatService}.
+ * <p>
+ * Responsibilities:
+ * <ul>
+ *     <li>Opening sessions by id (creating a new id when the client does not send one).</li>
+ *     <li>Turning a session's summary and recent turns into chat messages for the prompt.</li>
+ *     <li>Recording finished turns and compacting older ones into a summary as
+ *     {@link GenerationPriority#BACKGROUND} work, so the history part of the prompt stays capped.</li>
+ *     <li>Deciding whether a follow-up question is close enough to the previous one to reuse its retrieval.</li>
+ * </ul>
+ * </p>
+ */
+@Service
+public class ConversationService {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationService.class);
+
+    private final ConversationStore conversationStore;
+    private final GenerationScheduler generationScheduler;
+    private final int maxRecentTurns;
+    private final int maxSummaryChars;
+    private final double reuseSimilarity;
+
+    public ConversationService(ConversationStore conversationStore,
+                               GenerationScheduler generationScheduler,
+                               @Value("${docwhisperer.chat.sessions.max-recent-turns:6}") int maxRecentTurns,
+                               @Value("${docwhisperer.chat.sessions.max-summary-chars:2000}") int maxSummaryChars,
+                               @Value("${docwhisperer.chat.sessions.reuse-similarity:0.92}") double reuseSimilarity) {
+        this.conversationStore = conversationStore;
+        this.generationScheduler = generationScheduler;
+        this.maxRecentTurns = maxRecentTurns;
+        this.maxSummaryChars = maxSummaryChars;
+        this.reuseSimilarity = reuseSimilarity;
+    }
+
+    /**
+     * Opens an existing session, or a new one if {@code sessionId} is null/blank.
+     */
+    public ChatSession openSession(String sessionId) {
+        String id = sessionId == null || sessionId.isBlank() ? UUID.randomUUID().toString() : sessionId;
+        return conversationStore.getOrCreate(id);
+    }
+
+    /**
+     * Builds the messages sent to the LLM: the system prompt (with the conversation summary appended, if any),
+     * the recent turns as user/assistant pairs, and finally the new question.
+     */
+    public List<ChatMessage> buildMessages(ChatSession session, String systemPrompt, String question) {
+        List<ChatMessage> messages = new ArrayList<>();
+        String summary = session == null ? null : session.getSummary();
+        if (summary != null && !summary.isBlank()) {
+            systemPrompt = systemPrompt + "\n\nSummary of the earlier conversation:\n" + summary;
+        }
+        messages.add(SystemMessage.from(systemPrompt));
+        if (session != null) {
+            for (ChatTurn turn : session.getRecentTurns()) {
+                messages.add(UserMessage.from(turn.question()));
+                messages.add(AiMessage.from(turn.answer()));
+            }
+        }
+        messages.add(UserMessage.from(question));
+        return messages;
+    }
+
+    /**
+     * Returns the chunks retrieved for the previous turn if this question is a close follow-up on the same document.
+     */
+    public Optional<List<RetrievedChunk>> reusableRetrieval(ChatSession session, String documentId, float[] questionVector) {
+        return session.reusableRetrieval(documentId, questionVector, reuseSimilarity);
+    }
+
+    /**
+     * Records a finished turn and its retrieval, then schedules compaction if the session grew past the limit.
+     */
+    public void recordTurn(ChatSession session, String question, String answer,
+                           String documentId, float[] questionVector, List<RetrievedChunk> retrieved) {
+        session.rememberRetrieval(documentId, questionVector, retrieved);
+        conversationStore.appendTurn(session, new ChatTurn(question, answer, LocalDateTime.now()));
+
+        List<ChatTurn> toCompact = session.claimTurnsForCompaction(maxRecentTurns, maxRecentTurns / 2);
+        if (!toCompact.isEmpty()) {
+            compact(session, toCompact);
+        }
+    }
+
+    /**
+     * Submits the summarization of {@code turns} as background work; the session is updated when it completes.
+     * Compaction is best-effort: on rejection or failure the turns simply stay in the session until the next attempt.
+     */
+    private void compact(ChatSession session, List<ChatTurn> turns) {
+        try {
+            StringBuilder transcript = new StringBuilder();
+            String previousSummary = session.getSummary();
+            if (previousSummary != null && !previousSummary.isBlank()) {
+                transcript.append("Summary so far:\n").append(previousSummary).append("\n\n");
+            }
+            for (ChatTurn turn : turns) {
+                transcript.append("User: ").append(turn.question()).append('\n')
+                        .append("Assistant: ").append(turn.answer()).append("\n\n");
+            }
+            String instructions = "Summarize the following conversation between a user and a document assistant. " +
+                    "Keep facts, names and open questions that later questions may refer to. " +
+                    "Answer with the summary only, in at most " + maxSummaryChars + " characters.";
+            List<ChatMessage> messages = List.of(
+                    SystemMessage.from(instructions),
+                    UserMessage.from(transcript.toString()));
+            generationScheduler.submit(GenerationPriority.BACKGROUND, messages).whenComplete((response, error) -> {
+                if (error != null) {
+                    log.warn("Failed to compact session {}", session.getId(), error);
+                    session.abortCompaction();
+                    return;
+                }
+                String summary = response.content().text();
+                if (summary.length() > maxSummaryChars) {
+                    summary = summary.substring(0, maxSummaryChars);
+                }
+                conversationStore.applyCompaction(session, summary, turns.size());
+                log.debug("Compacted {} turns of session {} into a {} char summary", turns.size(), session.getId(), summary.length());
+            });
+        } catch (GenerationRejectedException e) {
+            log.debug("Background queue full, keeping session {} uncompacted for now", session.getId());
+            session.abortCompaction();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.documents.Document;
+
+import java.util.List;
+
+/**
+ * One page of the document listing.
+ *
+ * @param items      The documents of this page, newest first.
+ * @param nextCursor Opaque cursor to pass back for the next page, or null if this is the last page.
+ */
+public record DocumentPage(List<Document> items, String nextCursor) {
+}
@@ -1,24 +1,30 @@
 package com.docwhisperer.backend.services;
 
 import com.docwhisperer.backend.documents.Document;
+import com.docwhisperer.backend.observability.PipelineObservations;
+import com.docwhisperer.backend.repositories.DocumentCatalog;
 import com.docwhisperer.backend.repositories.DocumentRepository;
-import dev.langchain4j.data.document.parser.apache.tika.ApacheTikaDocumentParser;
-import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import com.docwhisperer.backend.repositories.EmbeddingPartitions;
+import com.docwhisperer.backend.repositories.EmbeddingRepository;
+import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.segment.TextSegment;
-import dev.langchain4j.model.embedding.EmbeddingModel;
-import dev.langchain4j.store.embedding.EmbeddingStore;
-import dev.langchain4j.store.embedding.EmbeddingStoreIngestor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
 import java.util.List;
 import java.util.UUID;
-import java.util.stream.StreamSupport;
+
+import static com.docwhisperer.backend.observability.PipelineObservations.INGEST;
 
 /**
  * Service class that handles the core business logic for documents.
@@ -27,8 +33,9 @@ import java.util.stream.StreamSupport;
  * <ul>
  *     <li>Parsing uploaded files (PDF/DOCX) using Apache Tika.</li>
  *     <li>Splitting text into chunks and generating vector embeddings.</li>
- *     <li>Ingesting data into the Vector Store (PostgreSQL with pgvector).</li>
- *     <li>Managing document metadata in the relational database.</li>
+ *     <li>Ingesting data into the Vector Store (PostgreSQL with pgvector, partitioned by collection).</li>
+ *     <li>Managing document metadata in the relational database (paginated listing, deletion).</li>
+ *     <li>Queuing the background summary of every stored document ({@link DocumentSummarizer}).</li>
  * </ul>
  * </p>
  */
@@ -37,29 +44,39 @@ public class DocumentService {
 
     private static final Logger log = LoggerFactory.getLogger(DocumentService.class);
 
+    static final int MAX_PAGE_SIZE = 200;
+
     private final DocumentRepository documentRepository;
-    private final EmbeddingModel embeddingModel;
-    private final EmbeddingStore<TextSegment> embeddingStore;
-    private final JdbcTemplate jdbcTemplate;
+    private final DocumentCatalog documentCatalog;
+    private final IngestionPipeline ingestionPipeline;
+    private final EmbeddingRepository embeddingRepository;
+    private final DocumentSummarizer documentSummarizer;
+    private final PipelineObservations observations;
 
     /**
      * Constructor injection of dependencies.
      *
-     * @param documentRepository The DAO for document metadata.
-     * @param embeddingModel     The model used to generate vector embeddings.
-     * @param embeddingStore     The vector database for storing embeddings.
-     * @param jdbcTemplate       Spring JDBC template for executing direct SQL queries.
+     * @param documentRepository  The DAO for document metadata.
+     * @param documentCatalog     Paginated read access to document metadata.
+     * @param ingestionPipeline   The parse/split/embed/persist stages shared with batch ingestion.
+     * @param embeddingRepository Direct SQL access to the embeddings table (bulk deletes).
+     * @param documentSummarizer  Generates summaries and suggested questions in the background.
+     * @param observations        Metrics/tracing helper used to time each ingestion stage.
      */
     public DocumentService(
             DocumentRepository documentRepository,
-            EmbeddingModel embeddingModel,
-            EmbeddingStore<TextSegment> embeddingStore,
-            JdbcTemplate jdbcTemplate
+            DocumentCatalog documentCatalog,
+            IngestionPipeline ingestionPipeline,
+            EmbeddingRepository embeddingRepository,
+            DocumentSummarizer documentSummarizer,
+            PipelineObservations observations
     ) {
         this.documentRepository = documentRepository;
-        this.embeddingModel = embeddingModel;
-        this.embeddingStore = embeddingStore;
-        this.jdbcTemplate = jdbcTemplate;
+        this.documentCatalog = documentCatalog;
+        this.ingestionPipeline = ingestionPipeline;
+        this.embeddingRepository = embeddingRepository;
+        this.documentSummarizer = documentSummarizer;
+        this.observations = observations;
     }
 
     /**
@@ -68,78 +85,146 @@ public class DocumentService {
      *     <li>Parses text from PDF/DOCX using Apache Tika.</li>
      *     <li>Ingests text into Vector DB (splits, embeds, stores).</li>
      *     <li>Saves metadata to Postgres 'document' table.</li>
+     *     <li>Queues the document's summary (generated in the background).</li>
      * </ol>
+     * Each step is timed separately as a {@code docwhisperer.ingest.stage} observation
+     * (parse, split, embed, persist).
      *
-     * @param file The uploaded file.
+     * @param file       The uploaded file.
+     * @param collection The collection (tenant) to store it in; null/blank for the default collection.
      * @return The saved Document metadata.
      * @throws IOException If file reading fails.
      */
-    public Document store(MultipartFile file) throws IOException {
-        log.info("Processing upload for file: {}", file.getOriginalFilename());
+    public Document store(MultipartFile file, String collection) throws IOException {
+        String validCollection = EmbeddingPartitions.requireValidCollection(collection);
+        return observations.pipeline(INGEST, () -> doStore(file, validCollection));
+    }
+
+    private Document doStore(MultipartFile file, String collection) throws IOException {
+        log.debug("Processing upload for file: {}", file.getOriginalFilename());
 
-        // 1. Parse Document using Tika
-        ApacheTikaDocumentParser parser = new ApacheTikaDocumentParser();
-        var document = parser.parse(file.getInputStream());
-        log.info("Parsed text length: {} chars", document.text().length());
+        // 1. Parse Document using Tika (text plus page boundaries)
+        ParsedDocument document = ingestionPipeline.parse(file.getInputStream());
+        log.debug("Parsed text length: {} chars", document.text().length());
         
         // 2. Assign metadata ID to link vectors to this document
         String docId = UUID.randomUUID().toString();
 
-        // 3. Create ingestor with textSegmentTransformer to propagate documentId to each chunk
+        // 3. Split into chunks and propagate documentId (and page/offset) to each chunk
         // This is critical for filtering by documentId during retrieval
-        EmbeddingStoreIngestor ingestor = EmbeddingStoreIngestor.builder()
-                .documentSplitter(DocumentSplitters.recursive(500, 50))
-                .embeddingModel(embeddingModel)
-                .embeddingStore(embeddingStore)
-                .textSegmentTransformer(segment -> {
-                    segment.metadata().put("documentId", docId);
-                    return segment;
-                })
-                .build();
-
-        // 4. Ingest (Split -> Embed -> Store Vectors with documentId metadata)
-        log.info("Starting ingestion into vector store...");
-        ingestor.ingest(document);
-        log.info("Ingestion completed for documentId: {}", docId);
-
-        // 4. Save Metadata to DB
+        List<TextSegment> segments = ingestionPipeline.split(document, docId);
+
+        // 4. Ingest (Embed -> Store Vectors with documentId metadata)
+        log.debug("Starting ingestion of {} segments into vector store...", segments.size());
+        List<Embedding> embeddings = ingestionPipeline.embed(segments);
+        ingestionPipeline.persist(collection, embeddings, segments);
+        log.info("Ingested '{}' as documentId {}: {} chars, {} segments",
+                file.getOriginalFilename(), docId, document.text().length(), segments.size());
+
+        // 5. Save Metadata to DB
         Document docEntity = new Document(
                 docId,
                 file.getOriginalFilename(),
                 file.getContentType(),
                 file.getSize(),
                 LocalDateTime.now(),
-                1 // Simple placeholder, Tika can extract real page count if needed
+                document.pageCount(),
+                collection
         );
         
-        return documentRepository.save(docEntity);
+        Document saved = observations.stage(INGEST, "save-metadata", () -> documentRepository.save(docEntity));
+
+        // 6. Summarize in the background (needs the metadata row, which the summary references)
+        documentSummarizer.schedule(docId);
+        return saved;
     }
 
     /**
-     * Retrieves all documents from the metadata database.
-     * @return List of all documents.
+     * Retrieves one page of documents of one collection, newest first (keyset pagination).
+     *
+     * @param collection The collection (tenant) to list; null/blank for the default collection.
+     * @param namePrefix Only documents whose name starts with this, or null/blank for all.
+     * @param type       Only documents of this MIME type, or null/blank for all.
+     * @param cursor     The {@code nextCursor} of the previous page, or null for the first page.
+     * @param limit      Page size, clamped to 1..{@value #MAX_PAGE_SIZE}.
+     * @return The page, with the cursor of the next one if there are more documents.
+     * @throws ResponseStatusException (400) if the cursor or collection is malformed.
+     */
+    public DocumentPage listDocuments(String collection, String namePrefix, String type, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        // Fetch one extra row to know whether there is a next page
+        List<Document> documents = documentCatalog.findPage(EmbeddingPartitions.requireValidCollection(collection),
+                blankToNull(namePrefix), blankToNull(type), decodeCursor(cursor), pageSize + 1);
+        if (documents.size() <= pageSize) {
+            return new DocumentPage(documents, null);
+        }
+        List<Document> items = documents.subList(0, pageSize);
+        return new DocumentPage(List.copyOf(items), encodeCursor(items.get(pageSize - 1)));
+    }
+
+    /**
+     * Returns the current version of the document catalog, which changes on every insert/update/delete.
+     * Clients can use it to skip reloading an unchanged listing.
      */
-    public List<Document> getAllDocuments() {
-        return StreamSupport.stream(documentRepository.findAll().spliterator(), false).toList();
+    public long catalogVersion() {
+        return documentCatalog.version();
     }
     
     /**
-     * Deletes a document by ID.
+     * Deletes a document of a collection by ID.
+     *
+     * @param collection The collection (tenant) of the document; null/blank for the default collection.
+     * @param id         The document ID to delete.
+     * @see #deleteDocuments(String, List)
+     */
+    @Transactional
+    public void deleteDocument(String collection, String id) {
+        deleteDocuments(collection, List.of(id));
+    }
+
+    /**
+     * Deletes several documents of a collection at once. Ids of documents of other collections are ignored.
      * <p>
-     * This method performs a cascading delete:
-     * 1. Removes all vector embeddings associated with the document ID from the 'embeddings' table.
+     * Both steps run in one transaction, so a failure cannot leave orphan vectors behind:
+     * 1. Removes all vector embeddings of these documents from the collection's partition (one indexed statement).
      * 2. Removes the document metadata from the 'document' table.
      * </p>
      *
-     * @param id The document ID to delete.
+     * @param collection The collection (tenant) of the documents; null/blank for the default collection.
+     * @param ids        The document IDs to delete.
+     * @throws ResponseStatusException (400) if the collection name is invalid.
      */
-    public void deleteDocument(String id) {
+    @Transactional
+    public void deleteDocuments(String collection, List<String> ids) {
+        String validCollection = EmbeddingPartitions.requireValidCollection(collection);
         // 1. Delete vectors from Embedding Store (Vector DB)
-        // Using direct SQL because EmbeddingStore interface might not expose filter deletion in this version
-        String deleteSql = "DELETE FROM embeddings WHERE metadata ->> 'documentId' = ?";
-        jdbcTemplate.update(deleteSql, id);
-        
+        int embeddings = embeddingRepository.deleteByDocumentIds(validCollection, ids);
+
         // 2. Delete metadata from Relational DB
-        documentRepository.deleteById(id);
+        int documents = documentRepository.deleteAllByIdInCollection(validCollection, ids);
+        log.info("Deleted {} documents of collection '{}' with {} embeddings", documents, validCollection, embeddings);
+    }
+
+    private static String encodeCursor(Document last) {
+        String position = last.getUploadedAt() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static DocumentCatalog.Position decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf('|');
+            return new DocumentCatalog.Position(
+                    LocalDateTime.parse(position.substring(0, separator)), position.substring(separator + 1));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException | DateTimeParseException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value;
     }
 }
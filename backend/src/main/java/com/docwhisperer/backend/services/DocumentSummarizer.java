@@ -0,0 +1,306 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.documents.DocumentSummary;
+import com.docwhisperer.backend.llm.GenerationPriority;
+import com.docwhisperer.backend.llm.GenerationRejectedException;
+import com.docwhisperer.backend.llm.GenerationScheduler;
+import com.docwhisperer.backend.repositories.DocumentRepository;
+import com.docwhisperer.backend.repositories.DocumentSummaryRepository;
+import com.docwhisperer.backend.repositories.EmbeddingRepository;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Precomputes a summary and suggested questions for every ingested document, so that "summarize this document"
+ * and the first question of a conversation do not need an LLM call on the interactive path.
+ * <p>
+ * How a document is summarized (map-reduce, on the single low-priority {@code summary} thread):
+ * <ul>
+ *     <li>Its stored chunks are read back in document order and packed into sections of up to
+ *     {@code section-chars} characters.</li>
+ *     <li>Map: every section is summarized on its own. Reduce: while the section summaries together are still
+ *     longer than one section, they are packed and summarized again (one level per round).</li>
+ *     <li>The remaining summaries are merged into the final summary, and a few questions are generated from it.</li>
+ * </ul>
+ * All LLM calls are {@link GenerationPriority#BACKGROUND} work, so they only use the scheduler's background slots
+ * and never delay chat requests; a rejected call is retried after {@code retry-delay}.
+ * Documents without a summary (queue full, failure, restart) are picked up again by a periodic backfill.
+ * Unsuccessful attempts are recorded: a failed document is retried after {@code failure-backoff}, doubled for every
+ * further failure, and given up after {@code max-failures}, so it cannot keep the backfill busy.
+ * Durations are recorded as {@code docwhisperer.summaries.duration} timers.
+ * </p>
+ */
+@Service
+public class DocumentSummarizer {
+
+    private static final Logger log = LoggerFactory.getLogger(DocumentSummarizer.class);
+
+    static final int SUGGESTED_QUESTIONS = 3;
+
+    /** Stops reducing if the model keeps answering with summaries that are too long. */
+    private static final int MAX_LEVELS = 4;
+
+    private final EmbeddingRepository embeddingRepository;
+    private final DocumentSummaryRepository summaryRepository;
+    private final DocumentRepository documentRepository;
+    private final GenerationScheduler generationScheduler;
+    private final ExecutorService executor;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int sectionChars;
+    private final int summaryChars;
+    private final int maxAttempts;
+    private final Duration retryDelay;
+    private final int backfillBatchSize;
+    private final int maxFailures;
+    private final Duration failureBackoff;
+
+    /** Documents queued or being summarized, so none is queued twice. */
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+
+    public DocumentSummarizer(EmbeddingRepository embeddingRepository,
+                              DocumentSummaryRepository summaryRepository,
+                              DocumentRepository documentRepository,
+                              GenerationScheduler generationScheduler,
+                              @Qualifier("summaryExecutor") ExecutorService executor,
+                              MeterRegistry meterRegistry,
+                              @Value("${docwhisperer.summaries.enabled:true}") boolean enabled,
+                              @Value("${docwhisperer.summaries.section-chars:6000}") int sectionChars,
+                              @Value("${docwhisperer.summaries.summary-chars:1200}") int summaryChars,
+                              @Value("${docwhisperer.summaries.max-attempts:3}") int maxAttempts,
+                              @Value("${docwhisperer.summaries.retry-delay:PT30S}") Duration retryDelay,
+                              @Value("${docwhisperer.summaries.backfill-batch-size:100}") int backfillBatchSize,
+                              @Value("${docwhisperer.summaries.max-failures:5}") int maxFailures,
+                              @Value("${docwhisperer.summaries.failure-backoff:PT30M}") Duration failureBackoff) {
+        this.embeddingRepository = embeddingRepository;
+        this.summaryRepository = summaryRepository;
+        this.documentRepository = documentRepository;
+        this.generationScheduler = generationScheduler;
+        this.executor = executor;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.sectionChars = sectionChars;
+        this.summaryChars = summaryChars;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryDelay = retryDelay;
+        this.backfillBatchSize = backfillBatchSize;
+        this.maxFailures = maxFailures;
+        this.failureBackoff = failureBackoff;
+    }
+
+    /**
+     * Queues the summarization of a document whose embeddings and metadata row are stored.
+     * Does nothing if the document is already queued or summaries are disabled.
+     */
+    public void schedule(String documentId) {
+        if (!enabled || !pending.add(documentId)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    if (summarize(documentId).isEmpty()) {
+                        recordFailure(documentId);
+                    }
+                } catch (RuntimeException e) {
+                    log.warn("Failed to summarize document {}: {}", documentId, e.getMessage());
+                    recordFailure(documentId);
+                } finally {
+                    pending.remove(documentId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(documentId);
+            log.debug("Summary queue full, document {} is left for the backfill", documentId);
+        }
+    }
+
+    /**
+     * Whether the summary of the document is queued or being generated.
+     */
+    public boolean isPending(String documentId) {
+        return pending.contains(documentId);
+    }
+
+    /**
+     * Whether the summary of a document of {@code collection} is queued or being generated.
+     */
+    public boolean isPending(String collection, String documentId) {
+        return isPending(documentId) && documentRepository.existsInCollection(collection, documentId);
+    }
+
+    /**
+     * Returns the summary of a document of {@code collection}, if it has been generated.
+     */
+    public Optional<DocumentSummary> find(String collection, String documentId) {
+        return summaryRepository.findByDocumentId(collection, documentId);
+    }
+
+    /**
+     * Queues documents that have no summary yet: ingested before summaries existed, dropped from a full queue,
+     * failed, or lost in a restart.
+     */
+    @Scheduled(initialDelayString = "${docwhisperer.summaries.backfill-interval:PT10M}",
+            fixedDelayString = "${docwhisperer.summaries.backfill-interval:PT10M}")
+    public void backfill() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            summaryRepository.findDocumentIdsWithoutSummary(backfillBatchSize, maxFailures, failureBackoff)
+                    .forEach(this::schedule);
+        } catch (RuntimeException e) {
+            log.warn("Summary backfill failed", e);
+        }
+    }
+
+    /**
+     * Summarizes one document and stores the result.
+     *
+     * @return The stored summary, or empty if the document has no chunks (or was deleted meanwhile).
+     */
+    Optional<DocumentSummary> summarize(String documentId) {
+        List<String> chunks = embeddingRepository.findTextsByDocumentId(documentId);
+        if (chunks.isEmpty()) {
+            return Optional.empty();
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "failure";
+        try {
+            List<String> parts = chunks;
+            int levels = 0;
+            while (length(parts) > sectionChars && levels < MAX_LEVELS) {
+                List<String> sections = pack(parts, sectionChars);
+                List<String> summaries = new ArrayList<>(sections.size());
+                for (String section : sections) {
+                    summaries.add(generate("Summarize the following part of a document in at most " + summaryChars
+                            + " characters. Keep key facts, names, numbers and conclusions. "
+                            + "Answer with the summary only.", section));
+                }
+                parts = summaries;
+                levels++;
+            }
+            String summary = generate("Write a summary of the document below in at most " + summaryChars
+                    + " characters. " + (levels > 0 ? "It is given as summaries of its consecutive parts. " : "")
+                    + "Answer with the summary only.", String.join("\n\n", parts));
+            List<String> questions = parseQuestions(generate("Suggest " + SUGGESTED_QUESTIONS
+                    + " short, specific questions a reader could ask about the document summarized below. "
+                    + "Answer with one question per line and nothing else.", summary));
+
+            DocumentSummary result = new DocumentSummary(documentId, summary, questions, LocalDateTime.now());
+            try {
+                summaryRepository.save(result);
+            } catch (DataIntegrityViolationException e) {
+                outcome = "deleted";
+                log.debug("Document {} was deleted while it was summarized", documentId);
+                return Optional.empty();
+            }
+            outcome = "success";
+            log.info("Summarized document {}: {} chunks, {} reduce levels", documentId, chunks.size(), levels);
+            return Optional.of(result);
+        } finally {
+            sample.stop(Timer.builder("docwhisperer.summaries.duration")
+                    .description("Time to summarize a document in the background")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+        }
+    }
+
+    /**
+     * Records an unsuccessful attempt (no summary stored), so the backfill backs off. Never throws.
+     */
+    private void recordFailure(String documentId) {
+        try {
+            summaryRepository.recordFailure(documentId);
+        } catch (DataIntegrityViolationException e) {
+            // Deleted meanwhile, nothing to retry
+        } catch (RuntimeException e) {
+            log.warn("Failed to record the failed summary attempt of document {}", documentId, e);
+        }
+    }
+
+    /**
+     * Packs consecutive texts into sections of at most {@code maxChars} characters (a longer text is a section
+     * of its own).
+     */
+    static List<String> pack(List<String> texts, int maxChars) {
+        List<String> sections = new ArrayList<>();
+        StringBuilder section = new StringBuilder();
+        for (String text : texts) {
+            if (!section.isEmpty() && section.length() + 2 + text.length() > maxChars) {
+                sections.add(section.toString());
+                section.setLength(0);
+            }
+            if (!section.isEmpty()) {
+                section.append("\n\n");
+            }
+            section.append(text);
+        }
+        if (!section.isEmpty()) {
+            sections.add(section.toString());
+        }
+        return sections;
+    }
+
+    /**
+     * Extracts the questions from the model's answer, one per line, without list markers such as "1." or "-".
+     */
+    static List<String> parseQuestions(String answer) {
+        return answer.lines()
+                .map(line -> line.replaceFirst("^\\s*(?:\\d+[.)]|[-*])\\s*", "").trim())
+                .filter(line -> !line.isEmpty())
+                .limit(SUGGESTED_QUESTIONS)
+                .toList();
+    }
+
+    private String generate(String instructions, String text) {
+        List<ChatMessage> messages = List.of(SystemMessage.from(instructions), UserMessage.from(text));
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return generationScheduler.generate(GenerationPriority.BACKGROUND, messages).content().text().trim();
+            } catch (GenerationRejectedException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                sleep(retryDelay);
+            }
+        }
+    }
+
+    private static int length(List<String> texts) {
+        int length = 0;
+        for (String text : texts) {
+            length += text.length();
+        }
+        return length;
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting to retry", e);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.documents.Document;
+
+/**
+ * Outcome for one file of a batch upload, streamed to the client as soon as the file is done.
+ *
+ * @param fileName The name of the uploaded file (or ZIP entry).
+ * @param status   {@code ingested} or {@code failed}.
+ * @param document The saved document metadata, if ingested.
+ * @param error    Why the file could not be ingested, if failed.
+ */
+public record IngestResult(String fileName, String status, Document document, String error) {
+
+    public static IngestResult ingested(String fileName, Document document) {
+        return new IngestResult(fileName, "ingested", document, null);
+    }
+
+    public static IngestResult failed(String fileName, String error) {
+        return new IngestResult(fileName, "failed", null, error);
+    }
+}
@@ -0,0 +1,33 @@
+package com.docwhisperer.backend.services;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * One file of a batch upload, spooled to a temporary file so it can be parsed after the HTTP request thread
+ * has returned without holding its bytes in memory while the batch waits in the queue.
+ *
+ * @param name        The file name (for ZIP entries, the path inside the archive).
+ * @param contentType The MIME type, or null if unknown.
+ * @param file        The temporary file holding the raw bytes; deleted once the file is parsed.
+ * @param size        The size of the file in bytes.
+ */
+public record IngestSource(String name, String contentType, Path file, long size) {
+
+    public InputStream openStream() throws IOException {
+        return Files.newInputStream(file);
+    }
+
+    /**
+     * Deletes the temporary file. Never throws.
+     */
+    public void delete() {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            // Left in the temp directory; the OS cleans it up eventually
+        }
+    }
+}
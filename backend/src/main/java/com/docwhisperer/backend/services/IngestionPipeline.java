@@ -0,0 +1,137 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.observability.PipelineObservations;
+import com.docwhisperer.backend.repositories.EmbeddingPartitions;
+import com.docwhisperer.backend.repositories.EmbeddingRepository;
+import com.docwhisperer.backend.splitting.DocumentLayout;
+import com.docwhisperer.backend.splitting.SplitterRegistry;
+import com.docwhisperer.backend.splitting.TextChunk;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import org.apache.tika.exception.TikaException;
+import org.apache.tika.metadata.Metadata;
+import org.apache.tika.metadata.Office;
+import org.apache.tika.parser.AutoDetectParser;
+import org.apache.tika.parser.ParseContext;
+import org.apache.tika.parser.Parser;
+import org.apache.tika.sax.BodyContentHandler;
+import org.springframework.stereotype.Component;
+import org.xml.sax.SAXException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.docwhisperer.backend.observability.PipelineObservations.INGEST;
+
+/**
+ * The individual stages of document ingestion (parse, split, embed, persist), shared by
+ * single uploads ({@link DocumentService}) and batch uploads ({@link BatchIngestionService}).
+ * <p>
+ * Every stage is recorded as a {@code docwhisperer.ingest.stage} observation.
+ * Parsing uses one shared, thread-safe Tika {@link AutoDetectParser} with a fresh content handler per call,
+ * instead of building a new parser for every file.
+ * While parsing, the offsets at which pages, headings and tables start are recorded; splitting uses them to keep
+ * chunks within a page/section, and every chunk is tagged with its exact offset and page for citations.
+ * </p>
+ */
+@Component
+public class IngestionPipeline {
+
+    private final Parser tikaParser = new AutoDetectParser();
+    private final EmbeddingModel embeddingModel;
+    private final EmbeddingRepository embeddingRepository;
+    private final EmbeddingPartitions embeddingPartitions;
+    private final SplitterRegistry splitterRegistry;
+    private final PipelineObservations observations;
+
+    public IngestionPipeline(EmbeddingModel embeddingModel,
+                             EmbeddingRepository embeddingRepository,
+                             EmbeddingPartitions embeddingPartitions,
+                             SplitterRegistry splitterRegistry,
+                             PipelineObservations observations) {
+        this.embeddingModel = embeddingModel;
+        this.embeddingRepository = embeddingRepository;
+        this.embeddingPartitions = embeddingPartitions;
+        this.splitterRegistry = splitterRegistry;
+        this.observations = observations;
+    }
+
+    /**
+     * Extracts the plain text of a PDF/DOCX (or any other Tika-supported) file, with its layout
+     * (page, heading and table positions) and detected MIME type.
+     * <p>
+     * The page count is the number of pages Tika reported in the text (PDF), else the count stored in the
+     * file's properties (DOCX), else 1.
+     * </p>
+     *
+     * @throws IOException If the stream cannot be read or the file cannot be parsed.
+     */
+    public ParsedDocument parse(InputStream inputStream) throws IOException {
+        return observations.checkedStage(INGEST, "parse", () -> {
+            LayoutContentHandler handler = new LayoutContentHandler();
+            Metadata metadata = new Metadata();
+            try {
+                tikaParser.parse(inputStream, new BodyContentHandler(handler), metadata, new ParseContext());
+            } catch (SAXException | TikaException e) {
+                throw new IOException("Failed to parse document", e);
+            }
+            DocumentLayout layout = handler.layout();
+            Integer declaredPages = metadata.getInt(Office.PAGE_COUNT);
+            int pageCount = layout.pageStarts().length > 0 ? layout.pageStarts().length
+                    : declaredPages != null && declaredPages > 0 ? declaredPages : 1;
+            return new ParsedDocument(Document.from(handler.toString()), layout, pageCount,
+                    metadata.get(Metadata.CONTENT_TYPE));
+        });
+    }
+
+    /**
+     * Splits the text into chunks with the strategy for its MIME type (see {@link SplitterRegistry})
+     * and tags every chunk with metadata:
+     * <ul>
+     *     <li>{@code documentId}, which is what retrieval filters on.</li>
+     *     <li>{@code index}, the position of the chunk in the document.</li>
+     *     <li>{@code offset}, where the chunk starts in the extracted text.</li>
+     *     <li>{@code page}, the 1-based page the chunk starts on (only for formats with pages).</li>
+     * </ul>
+     */
+    public List<TextSegment> split(ParsedDocument parsed, String documentId) {
+        return observations.stage(INGEST, "split", () -> {
+            List<TextChunk> chunks = splitterRegistry.forType(parsed.contentType())
+                    .split(parsed.text(), parsed.layout());
+            List<TextSegment> segments = new ArrayList<>(chunks.size());
+            for (int i = 0; i < chunks.size(); i++) {
+                TextChunk chunk = chunks.get(i);
+                TextSegment segment = TextSegment.from(chunk.text());
+                segment.metadata().put("documentId", documentId);
+                segment.metadata().put("index", String.valueOf(i));
+                segment.metadata().put("offset", String.valueOf(chunk.start()));
+                int page = parsed.pageAt(chunk.start());
+                if (page > 0) {
+                    segment.metadata().put("page", String.valueOf(page));
+                }
+                segments.add(segment);
+            }
+            return segments;
+        });
+    }
+
+    public List<Embedding> embed(List<TextSegment> segments) {
+        return observations.stage(INGEST, "embed", () -> embeddingModel.embedAll(segments).content());
+    }
+
+    /**
+     * Writes the embeddings with their segments to the partition of {@code collection} in one batched insert,
+     * creating the partition first if this is the collection's first document.
+     */
+    public void persist(String collection, List<Embedding> embeddings, List<TextSegment> segments) {
+        observations.stage(INGEST, "persist", () -> {
+            embeddingPartitions.ensurePartition(collection);
+            embeddingRepository.insertAll(collection, embeddings, segments);
+            return null;
+        });
+    }
+}
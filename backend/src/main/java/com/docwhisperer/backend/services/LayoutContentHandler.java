@@ -0,0 +1,88 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.splitting.DocumentLayout;
+import org.apache.tika.sax.ContentHandlerDecorator;
+import org.apache.tika.sax.ToTextContentHandler;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+
+/**
+ * Writes the plain text of a Tika parse (like {@link org.apache.tika.sax.BodyContentHandler} does) and records
+ * the text offsets of its structure, for page citations and structure-aware splitting:
+ * <ul>
+ *     <li>Page starts: Tika's PDF parser wraps each page in {@code <div class="page">}.
+ *     DOCX and most other formats emit no page elements.</li>
+ *     <li>Section starts: headings ({@code <h1>}-{@code <h6>}, from DOCX heading styles) and the start and end
+ *     of tables.</li>
+ * </ul>
+ * Recording an offset costs one array write, so this adds nothing measurable to parsing.
+ */
+class LayoutContentHandler extends ContentHandlerDecorator {
+
+    private final StringWriter writer;
+    private final Offsets pageStarts = new Offsets();
+    private final Offsets sectionStarts = new Offsets();
+
+    LayoutContentHandler() {
+        this(new StringWriter());
+    }
+
+    private LayoutContentHandler(StringWriter writer) {
+        super(new ToTextContentHandler(writer));
+        this.writer = writer;
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String name, Attributes atts) throws SAXException {
+        if ("div".equals(localName) && "page".equals(atts.getValue("class"))) {
+            pageStarts.add(writer.getBuffer().length());
+        } else if (isHeading(localName) || "table".equals(localName)) {
+            sectionStarts.add(writer.getBuffer().length());
+        }
+        super.startElement(uri, localName, name, atts);
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String name) throws SAXException {
+        super.endElement(uri, localName, name);
+        if ("table".equals(localName)) {
+            sectionStarts.add(writer.getBuffer().length());
+        }
+    }
+
+    DocumentLayout layout() {
+        return new DocumentLayout(pageStarts.toArray(), sectionStarts.toArray());
+    }
+
+    @Override
+    public String toString() {
+        return writer.toString();
+    }
+
+    private static boolean isHeading(String localName) {
+        return localName.length() == 2 && localName.charAt(0) == 'h'
+                && localName.charAt(1) >= '1' && localName.charAt(1) <= '6';
+    }
+
+    /**
+     * Growable list of ascending offsets (repeated for empty pages/sections).
+     */
+    private static final class Offsets {
+        private int[] values = new int[16];
+        private int size;
+
+        void add(int offset) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = offset;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.repositories.EmbeddingRepository;
+import com.docwhisperer.backend.repositories.EmbeddingRepository.DocumentRef;
+import com.docwhisperer.backend.repositories.EmbeddingRepository.ScannedDocument;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Background job removing orphan embeddings: vectors whose document has no row in the 'document' table
+ * (e.g. after a crash during ingestion). Orphans would otherwise keep showing up in unfiltered searches.
+ * <p>
+ * Each sweep continues a scan over the distinct document ids of every partition where the previous one stopped,
+ * examining at most {@code scan-limit} documents, so no sweep reads the whole table. Ingestion stores the vectors
+ * before the document row, so a document id only counts as an orphan once it was found orphaned in an earlier scan
+ * at least {@code grace-period} ago. Orphans are then deleted in small batches, so no sweep holds long locks or
+ * produces a burst of dead tuples for autovacuum.
+ * </p>
+ */
+@Component
+@ConditionalOnProperty(prefix = "docwhisperer.maintenance.orphan-sweep", name = "enabled", matchIfMissing = true)
+public class OrphanEmbeddingSweeper {
+
+    private static final Logger log = LoggerFactory.getLogger(OrphanEmbeddingSweeper.class);
+
+    private final EmbeddingRepository embeddingRepository;
+    private final Duration gracePeriod;
+    private final int scanLimit;
+    private final int maxDocumentsPerSweep;
+    private final int deleteBatchSize;
+    private final Counter deletedEmbeddings;
+
+    // All state below is only touched by the scheduler thread
+
+    /** Orphan candidates of previous scans and when they were first seen. */
+    private final Map<DocumentRef, Instant> candidates = new HashMap<>();
+
+    /** Orphans seen during the current scan cycle (one pass over all partitions). */
+    private final Set<DocumentRef> seenInCycle = new HashSet<>();
+
+    /** Collections still to be scanned in the current cycle; the first one is being scanned. */
+    private final Deque<String> pendingCollections = new ArrayDeque<>();
+
+    /** The document id the scan of the first pending collection continues after. */
+    private String cursor = "";
+
+    public OrphanEmbeddingSweeper(EmbeddingRepository embeddingRepository,
+                                  MeterRegistry meterRegistry,
+                                  @Value("${docwhisperer.maintenance.orphan-sweep.grace-period:PT1H}") Duration gracePeriod,
+                                  @Value("${docwhisperer.maintenance.orphan-sweep.scan-limit:10000}") int scanLimit,
+                                  @Value("${docwhisperer.maintenance.orphan-sweep.max-documents:100}") int maxDocumentsPerSweep,
+                                  @Value("${docwhisperer.maintenance.orphan-sweep.batch-size:500}") int deleteBatchSize) {
+        this.embeddingRepository = embeddingRepository;
+        this.gracePeriod = gracePeriod;
+        this.scanLimit = scanLimit;
+        this.maxDocumentsPerSweep = maxDocumentsPerSweep;
+        this.deleteBatchSize = deleteBatchSize;
+        this.deletedEmbeddings = Counter.builder("docwhisperer.maintenance.orphans.deleted")
+                .description("Orphan embeddings removed by the sweeper")
+                .register(meterRegistry);
+    }
+
+    @Scheduled(initialDelayString = "${docwhisperer.maintenance.orphan-sweep.interval:PT10M}",
+            fixedDelayString = "${docwhisperer.maintenance.orphan-sweep.interval:PT10M}")
+    public void sweep() {
+        try {
+            sweep(Instant.now());
+        } catch (RuntimeException e) {
+            log.warn("Orphan embedding sweep failed", e);
+        }
+    }
+
+    /**
+     * Runs one sweep: scans on from the cursor until {@code scan-limit} documents were examined,
+     * {@code max-documents} orphans were found, or the cycle is complete.
+     *
+     * @return The number of deleted embeddings.
+     */
+    int sweep(Instant now) {
+        if (pendingCollections.isEmpty()) {
+            startCycle();
+        }
+        int budget = scanLimit;
+        int orphans = 0;
+        int deleted = 0;
+        while (!pendingCollections.isEmpty() && budget > 0 && orphans < maxDocumentsPerSweep) {
+            String collection = pendingCollections.getFirst();
+            List<ScannedDocument> scanned = embeddingRepository.scanDocuments(collection, cursor, budget);
+            boolean exhausted = scanned.size() < budget;
+            budget -= scanned.size();
+            for (ScannedDocument document : scanned) {
+                if (orphans == maxDocumentsPerSweep) {
+                    exhausted = false;
+                    break;
+                }
+                cursor = document.documentId();
+                DocumentRef ref = new DocumentRef(collection, document.documentId());
+                if (document.orphan()) {
+                    orphans++;
+                    deleted += sweepOrphan(ref, now);
+                } else {
+                    // Got its document row in the meantime
+                    candidates.remove(ref);
+                }
+            }
+            if (exhausted) {
+                pendingCollections.removeFirst();
+                cursor = "";
+            }
+        }
+
+        deletedEmbeddings.increment(deleted);
+        if (deleted > 0) {
+            log.info("Removed {} orphan embeddings", deleted);
+        }
+        return deleted;
+    }
+
+    private void startCycle() {
+        // Forget candidates not seen again during the last cycle, e.g. because a failed ingestion removed them
+        candidates.keySet().retainAll(seenInCycle);
+        seenInCycle.clear();
+        pendingCollections.addAll(embeddingRepository.findCollections());
+        cursor = "";
+    }
+
+    /**
+     * Deletes the embeddings of an orphan seen at least {@code grace-period} ago, otherwise remembers it.
+     *
+     * @return The number of deleted embeddings.
+     */
+    private int sweepOrphan(DocumentRef orphan, Instant now) {
+        seenInCycle.add(orphan);
+        Instant firstSeen = candidates.putIfAbsent(orphan, now);
+        if (firstSeen == null || firstSeen.plus(gracePeriod).isAfter(now)) {
+            return 0;
+        }
+        int deleted = 0;
+        int batch;
+        do {
+            batch = embeddingRepository.deleteBatchByDocumentId(orphan.collection(), orphan.documentId(), deleteBatchSize);
+            deleted += batch;
+        } while (batch == deleteBatchSize);
+        candidates.remove(orphan);
+        return deleted;
+    }
+}
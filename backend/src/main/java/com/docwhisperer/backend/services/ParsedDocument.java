@@ -0,0 +1,26 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.splitting.DocumentLayout;
+import dev.langchain4j.data.document.Document;
+
+/**
+ * The text extracted from a file, with its structure.
+ *
+ * @param document    The extracted text.
+ * @param layout      Where pages and sections start in the text.
+ * @param pageCount   The number of pages (at least 1).
+ * @param contentType The MIME type Tika detected, or null if unknown.
+ */
+public record ParsedDocument(Document document, DocumentLayout layout, int pageCount, String contentType) {
+
+    public String text() {
+        return document.text();
+    }
+
+    /**
+     * Returns the 1-based page containing the character at {@code offset}, or 0 if page positions are unknown.
+     */
+    public int pageAt(int offset) {
+        return layout.pageAt(offset);
+    }
+}
@@ -0,0 +1,23 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.documents.RetrievedChunk;
+
+/**
+ * A source an answer was based on, for citations: lets the client jump to the page it came from.
+ *
+ * @param documentId   The document.
+ * @param documentName The document's file name.
+ * @param page         The 1-based page, or null if the document has no pages (e.g. DOCX).
+ * @param score        Best similarity of the chunks from this page.
+ * @param excerpt      The beginning of the best matching chunk on this page.
+ */
+public record SourceReference(String documentId, String documentName, Integer page, double score, String excerpt) {
+
+    static final int MAX_EXCERPT_CHARS = 200;
+
+    static SourceReference of(RetrievedChunk chunk) {
+        String text = chunk.text();
+        String excerpt = text.length() <= MAX_EXCERPT_CHARS ? text : text.substring(0, MAX_EXCERPT_CHARS) + "...";
+        return new SourceReference(chunk.documentId(), chunk.documentName(), chunk.page(), chunk.score(), excerpt);
+    }
+}
@@ -0,0 +1,185 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.repositories.EmbeddingRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Warms up the chat path once at startup, before the application reports itself ready.
+ * <p>
+ * Steps (each best-effort; a failure is logged and reported, and the next step still runs):
+ * <ul>
+ *     <li><b>embed</b>: a few synthetic question and chunk-batch embeddings. This loads the (lazy) ONNX model,
+ *     initializes its session and gets the embedding code JIT-compiled.</li>
+ *     <li><b>search</b>: one nearest-neighbour query, which pulls the HNSW index pages into Postgres' buffer cache.</li>
+ *     <li><b>ollama</b>: an empty {@code /api/generate} request per Ollama backend with {@code keep_alive}, which
+ *     loads the chat model into memory and keeps it there, so the first question does not pay for loading it.</li>
+ * </ul>
+ * It runs as an {@link ApplicationRunner}: Spring Boot only switches the readiness state to ACCEPTING_TRAFFIC
+ * after all runners have finished, while liveness is already reported as CORRECT. It is also the {@code warmup}
+ * health indicator (part of the readiness group), which reports the outcome and duration of every step.
+ * Step durations are recorded as {@code docwhisperer.startup.warmup} timers.
+ * </p>
+ */
+@Component("warmup")
+public class StartupWarmup implements ApplicationRunner, HealthIndicator {
+
+    private static final Logger log = LoggerFactory.getLogger(StartupWarmup.class);
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private static final String QUESTION = "What are the termination conditions and notice periods in this agreement?";
+    private static final String CHUNK = "Either party may terminate this agreement with thirty days written notice. "
+            + "Fees already invoiced remain payable, and obligations regarding confidentiality survive termination. ";
+
+    private final EmbeddingModel embeddingModel;
+    private final EmbeddingRepository embeddingRepository;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int embeddingRounds;
+    private final List<String> ollamaEndpoints;
+    private final String ollamaModel;
+    private final String ollamaKeepAlive;
+    private final Duration ollamaTimeout;
+    private final Map<String, String> steps = new LinkedHashMap<>();
+    private volatile Health health = Health.outOfService().withDetail("status", "warming up").build();
+
+    public StartupWarmup(EmbeddingModel embeddingModel,
+                         EmbeddingRepository embeddingRepository,
+                         MeterRegistry meterRegistry,
+                         @Value("${docwhisperer.warmup.enabled:true}") boolean enabled,
+                         @Value("${docwhisperer.warmup.embedding-rounds:5}") int embeddingRounds,
+                         @Value("${docwhisperer.llm.pool.endpoints:${langchain4j.ollama.chat-model.base-url:}}") List<String> ollamaEndpoints,
+                         @Value("${langchain4j.ollama.chat-model.model-name:}") String ollamaModel,
+                         @Value("${docwhisperer.warmup.ollama-keep-alive:30m}") String ollamaKeepAlive,
+                         @Value("${langchain4j.ollama.chat-model.timeout:PT120S}") Duration ollamaTimeout) {
+        this.embeddingModel = embeddingModel;
+        this.embeddingRepository = embeddingRepository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.embeddingRounds = Math.max(1, embeddingRounds);
+        this.ollamaEndpoints = ollamaEndpoints.stream().map(String::trim).filter(endpoint -> !endpoint.isEmpty()).toList();
+        this.ollamaModel = ollamaModel;
+        this.ollamaKeepAlive = ollamaKeepAlive;
+        this.ollamaTimeout = ollamaTimeout;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            health = Health.up().withDetail("status", "disabled").build();
+            return;
+        }
+        long start = System.nanoTime();
+        float[] questionVector = step("embed", this::warmUpEmbeddings);
+        if (questionVector != null) {
+            step("search", () -> embeddingRepository.findNearestDocumentIds(questionVector, 5));
+        }
+        if (!ollamaEndpoints.isEmpty() && !ollamaKeepAlive.isBlank()) {
+            step("ollama", () -> {
+                keepAlive();
+                return null;
+            });
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        synchronized (steps) {
+            health = Health.up().withDetail("status", "done").withDetail("durationMs", millis)
+                    .withDetail("steps", Map.copyOf(steps)).build();
+        }
+        log.info("Startup warm-up finished in {} ms: {}", millis, steps);
+    }
+
+    @Override
+    public Health health() {
+        return health;
+    }
+
+    private float[] warmUpEmbeddings() {
+        List<TextSegment> batch = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            batch.add(TextSegment.from(CHUNK.repeat(1 + i % 3)));
+        }
+        Embedding question = null;
+        for (int round = 0; round < embeddingRounds; round++) {
+            question = embeddingModel.embed(QUESTION + " " + round).content();
+            embeddingModel.embedAll(batch);
+        }
+        return question.vector();
+    }
+
+    /**
+     * Asks every Ollama backend to load the chat model and keep it loaded for {@code ollama-keep-alive},
+     * in parallel. A prompt-less generate request only loads the model.
+     */
+    private void keepAlive() {
+        HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+        String body = keepAliveBody(ollamaModel, ollamaKeepAlive);
+        List<CompletableFuture<Void>> requests = ollamaEndpoints.stream()
+                .map(endpoint -> httpClient.sendAsync(
+                                HttpRequest.newBuilder(URI.create(endpoint.replaceAll("/+$", "") + "/api/generate"))
+                                        .timeout(ollamaTimeout)
+                                        .header("Content-Type", "application/json")
+                                        .POST(HttpRequest.BodyPublishers.ofString(body))
+                                        .build(),
+                                HttpResponse.BodyHandlers.discarding())
+                        .thenAccept(response -> {
+                            if (response.statusCode() != 200) {
+                                throw new IllegalStateException(endpoint + " answered HTTP " + response.statusCode());
+                            }
+                        }))
+                .toList();
+        CompletableFuture.allOf(requests.toArray(CompletableFuture[]::new)).join();
+    }
+
+    /**
+     * The JSON body of a prompt-less Ollama generate request that loads {@code model} for {@code keepAlive}.
+     */
+    static String keepAliveBody(String model, String keepAlive) {
+        return OBJECT_MAPPER.createObjectNode().put("model", model).put("keep_alive", keepAlive).toString();
+    }
+
+    private <T> T step(String name, Supplier<T> action) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "success";
+        try {
+            return action.get();
+        } catch (RuntimeException e) {
+            outcome = "failure";
+            log.warn("Startup warm-up step '{}' failed: {}", name, e.getMessage());
+            return null;
+        } finally {
+            long nanos = sample.stop(Timer.builder("docwhisperer.startup.warmup")
+                    .description("Duration of the startup warm-up steps")
+                    .tag("step", name)
+                    .tag("outcome", outcome)
+                    .register(meterRegistry));
+            synchronized (steps) {
+                steps.put(name, outcome + " in " + nanos / 1_000_000 + " ms");
+            }
+        }
+    }
+}
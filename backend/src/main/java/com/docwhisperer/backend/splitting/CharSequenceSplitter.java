@@ -0,0 +1,161 @@
+package com.docwhisperer.backend.splitting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits text into chunks of at most {@code maxChars} characters, overlapping by up to {@code overlapChars},
+ * breaking at the best boundary available: paragraph, then line, then sentence, then word (hard cut as a last resort).
+ * <p>
+ * Produces the same kind of chunks as LangChain4j's recursive splitter, but in a single pass over the text:
+ * the break point of each chunk is found by scanning back from its maximum end once, looking for all boundary
+ * kinds at the same time, and the text is only ever read through {@link CharSequence#charAt}. The only
+ * allocations are the chunk strings themselves, and every chunk knows its exact offsets in the text.
+ * </p>
+ * <p>
+ * Text can be split into regions first ({@link #split(CharSequence, int[])}): chunks never cross a region
+ * boundary, which is how pages and sections are kept apart. Regions shorter than {@code minChars} are merged
+ * into the next one, so e.g. a heading alone does not become a chunk.
+ * </p>
+ */
+public class CharSequenceSplitter {
+
+    private static final int WORD = 1;
+    private static final int SENTENCE = 2;
+    private static final int LINE = 3;
+    private static final int PARAGRAPH = 4;
+
+    private final int maxChars;
+    private final int overlapChars;
+    private final int minChars;
+
+    /**
+     * @param maxChars     Maximum chunk length.
+     * @param overlapChars How many characters of the end of a chunk are repeated at the start of the next one.
+     * @param minChars     Minimum region length; shorter regions are merged into the next one.
+     *                     0 keeps every region apart, e.g. pages.
+     */
+    public CharSequenceSplitter(int maxChars, int overlapChars, int minChars) {
+        if (maxChars <= 0 || overlapChars < 0 || overlapChars >= maxChars) {
+            throw new IllegalArgumentException(
+                    "Need maxChars > 0 and 0 <= overlapChars < maxChars, got " + maxChars + "/" + overlapChars);
+        }
+        this.maxChars = maxChars;
+        this.overlapChars = overlapChars;
+        this.minChars = minChars;
+    }
+
+    /**
+     * Splits the whole text.
+     */
+    public List<TextChunk> split(CharSequence text) {
+        return split(text, new int[0]);
+    }
+
+    /**
+     * Splits the text without crossing any of the given region boundaries.
+     *
+     * @param boundaries Offsets at which a new region starts, ascending.
+     */
+    public List<TextChunk> split(CharSequence text, int[] boundaries) {
+        int length = text.length();
+        List<TextChunk> chunks = new ArrayList<>(length / Math.max(1, maxChars - overlapChars) + 1);
+        int regionStart = 0;
+        for (int i = 0; i <= boundaries.length; i++) {
+            int regionEnd = i < boundaries.length ? Math.min(boundaries[i], length) : length;
+            if (regionEnd - regionStart < (i < boundaries.length ? Math.max(1, minChars) : 1)) {
+                // Empty, or too short on its own: continue the region up to the next boundary
+                continue;
+            }
+            splitRegion(text, regionStart, regionEnd, chunks);
+            regionStart = regionEnd;
+        }
+        return chunks;
+    }
+
+    private void splitRegion(CharSequence text, int from, int to, List<TextChunk> chunks) {
+        int start = skipWhitespace(text, from, to);
+        while (start < to) {
+            int limit = start + maxChars;
+            int end = limit >= to ? to : breakPoint(text, start, limit);
+            int trimmedEnd = trimTrailingWhitespace(text, start, end);
+            if (trimmedEnd > start) {
+                chunks.add(new TextChunk(start, trimmedEnd, text.subSequence(start, trimmedEnd).toString()));
+            }
+            if (end >= to) {
+                return;
+            }
+            start = skipWhitespace(text, overlapStart(text, start, end), to);
+        }
+    }
+
+    /**
+     * Returns where the chunk starting at {@code start} should end: the position of the last whitespace
+     * character at or before {@code limit} that marks the best kind of boundary. Chunks are not made shorter
+     * than half of {@code maxChars} to find a better boundary.
+     */
+    private int breakPoint(CharSequence text, int start, int limit) {
+        int minEnd = start + Math.max(1, maxChars / 2);
+        int bestLevel = 0;
+        int best = limit;
+        for (int p = limit; p > minEnd; p--) {
+            char c = text.charAt(p);
+            if (!Character.isWhitespace(c)) {
+                continue;
+            }
+            int level;
+            if (c == '\n') {
+                level = text.charAt(p - 1) == '\n' || (p + 1 < text.length() && text.charAt(p + 1) == '\n')
+                        ? PARAGRAPH : LINE;
+            } else {
+                level = isSentenceEnd(text.charAt(p - 1)) ? SENTENCE : WORD;
+            }
+            if (level > bestLevel) {
+                bestLevel = level;
+                best = p;
+                if (level == PARAGRAPH) {
+                    // Scanning backwards, the first paragraph break is the latest one
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Returns where the chunk after [start, end) starts: the first sentence start within the last
+     * {@code overlapChars} of the chunk, else the first word start there, else {@code end} (no overlap).
+     */
+    private int overlapStart(CharSequence text, int start, int end) {
+        int wordStart = end;
+        for (int p = Math.max(start + 1, end - overlapChars); p < end; p++) {
+            char previous = text.charAt(p - 1);
+            if (!Character.isWhitespace(previous) || Character.isWhitespace(text.charAt(p))) {
+                continue;
+            }
+            if (previous == '\n' || (p >= 2 && isSentenceEnd(text.charAt(p - 2)))) {
+                return p;
+            }
+            wordStart = Math.min(wordStart, p);
+        }
+        return wordStart;
+    }
+
+    private static boolean isSentenceEnd(char c) {
+        return c == '.' || c == '?' || c == '!';
+    }
+
+    private static int skipWhitespace(CharSequence text, int from, int to) {
+        while (from < to && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimTrailingWhitespace(CharSequence text, int start, int end) {
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+}
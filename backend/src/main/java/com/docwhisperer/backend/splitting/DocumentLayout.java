@@ -0,0 +1,33 @@
+package com.docwhisperer.backend.splitting;
+
+/**
+ * Structural positions in a document's extracted text, recorded while parsing.
+ *
+ * @param pageStarts    Offset at which each page starts, ascending; empty if the format has no pages (e.g. DOCX).
+ * @param sectionStarts Offsets at which a heading or a table starts, or a table ends, ascending.
+ */
+public record DocumentLayout(int[] pageStarts, int[] sectionStarts) {
+
+    public static final DocumentLayout NONE = new DocumentLayout(new int[0], new int[0]);
+
+    /**
+     * Returns the 1-based page containing the character at {@code offset}, or 0 if page positions are unknown.
+     */
+    public int pageAt(int offset) {
+        if (pageStarts.length == 0) {
+            return 0;
+        }
+        // Number of pages starting at or before the offset; empty pages share their start with the next page
+        int low = 0;
+        int high = pageStarts.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (pageStarts[middle] <= offset) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return Math.max(1, low);
+    }
+}
@@ -0,0 +1,17 @@
+package com.docwhisperer.backend.splitting;
+
+import java.util.List;
+
+/**
+ * Splits a document's text into chunks for embedding. Implementations must be thread-safe.
+ */
+@FunctionalInterface
+public interface SplitStrategy {
+
+    /**
+     * @param text   The extracted text.
+     * @param layout Where pages and sections start in {@code text}.
+     * @return The chunks, in text order.
+     */
+    List<TextChunk> split(CharSequence text, DocumentLayout layout);
+}
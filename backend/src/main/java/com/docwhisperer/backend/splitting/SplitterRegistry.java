@@ -0,0 +1,56 @@
+package com.docwhisperer.backend.splitting;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Picks the split strategy for a document by its MIME type.
+ * <p>
+ * Strategies:
+ * <ul>
+ *     <li>PDF: page-aware, a chunk never spans two pages (so its page citation is exact).</li>
+ *     <li>DOCX: structure-aware, a chunk never crosses a heading or the start/end of a table,
+ *     so sections and tables are embedded on their own instead of being cut at a fixed size.
+ *     Sections shorter than {@code min-chars} (e.g. a lone heading) are merged into the next one.</li>
+ *     <li>Everything else: paragraph/line/sentence/word boundaries only.</li>
+ * </ul>
+ * All strategies share the chunk sizes configured under {@code docwhisperer.splitting.*}.
+ * </p>
+ */
+@Component
+public class SplitterRegistry {
+
+    static final String PDF = "application/pdf";
+    static final String DOCX = "application/vnd.openxmlformats-officedocument.wordprocessingml.document";
+
+    private final Map<String, SplitStrategy> strategies;
+    private final SplitStrategy fallback;
+
+    public SplitterRegistry(@Value("${docwhisperer.splitting.max-chars:500}") int maxChars,
+                            @Value("${docwhisperer.splitting.overlap-chars:50}") int overlapChars,
+                            @Value("${docwhisperer.splitting.min-chars:100}") int minChars) {
+        CharSequenceSplitter splitter = new CharSequenceSplitter(maxChars, overlapChars, minChars);
+        // Pages are never merged, however short, so every chunk stays on one page
+        CharSequenceSplitter pageSplitter = new CharSequenceSplitter(maxChars, overlapChars, 0);
+        SplitStrategy byPage = (text, layout) -> pageSplitter.split(text, layout.pageStarts());
+        SplitStrategy bySection = (text, layout) -> splitter.split(text, layout.sectionStarts());
+        this.strategies = Map.of(PDF, byPage, DOCX, bySection);
+        this.fallback = (text, layout) -> splitter.split(text);
+    }
+
+    /**
+     * Returns the strategy for the MIME type (parameters such as {@code ; charset=...} are ignored),
+     * or the generic one for unknown/null types.
+     */
+    public SplitStrategy forType(String mimeType) {
+        if (mimeType == null) {
+            return fallback;
+        }
+        int parameters = mimeType.indexOf(';');
+        String baseType = (parameters >= 0 ? mimeType.substring(0, parameters) : mimeType).trim().toLowerCase(Locale.ROOT);
+        return strategies.getOrDefault(baseType, fallback);
+    }
+}
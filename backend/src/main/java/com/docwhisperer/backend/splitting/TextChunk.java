@@ -0,0 +1,11 @@
+package com.docwhisperer.backend.splitting;
+
+/**
+ * A chunk of a document's text and where it is in the text.
+ *
+ * @param start Offset of the chunk's first character in the text.
+ * @param end   Offset just past the chunk's last character.
+ * @param text  The chunk text, i.e. {@code text.subSequence(start, end)}.
+ */
+public record TextChunk(int start, int end, String text) {
+}
@@ -9,9 +9,106 @@ CREATE TABLE IF NOT EXISTS document (
     page_count INT
 );
 
+-- Collection (tenant) a document belongs to; its embeddings live in that collection's partition
+ALTER TABLE document ADD COLUMN IF NOT EXISTS collection VARCHAR(64) NOT NULL DEFAULT 'default';
+
+-- Document listing: keyset pagination (newest first) within one collection, and its filters
+CREATE INDEX IF NOT EXISTS document_collection_uploaded_at_id_idx ON document (collection, uploaded_at DESC, id DESC);
+CREATE INDEX IF NOT EXISTS document_collection_type_uploaded_at_id_idx ON document (collection, type, uploaded_at DESC, id DESC);
+-- text_pattern_ops lets LIKE 'prefix%' use the index regardless of the database collation
+CREATE INDEX IF NOT EXISTS document_collection_name_prefix_idx ON document (collection, name text_pattern_ops);
+
+-- Version of the document table, bumped by a statement-level trigger on every change.
+-- Serves as the ETag of the document listing.
+CREATE TABLE IF NOT EXISTS document_catalog_version (
+    id INT PRIMARY KEY CHECK (id = 1),
+    version BIGINT NOT NULL
+);
+
+INSERT INTO document_catalog_version (id, version) VALUES (1, 0) ON CONFLICT (id) DO NOTHING;
+
+-- Function body in single quotes (not $$) so the script splitter does not break it at the inner semicolons
+CREATE OR REPLACE FUNCTION bump_document_catalog_version() RETURNS TRIGGER AS '
+BEGIN
+    UPDATE document_catalog_version SET version = version + 1 WHERE id = 1;
+    RETURN NULL;
+END;
+' LANGUAGE plpgsql;
+
+CREATE OR REPLACE TRIGGER document_catalog_version_trg
+    AFTER INSERT OR UPDATE OR DELETE OR TRUNCATE ON document
+    FOR EACH STATEMENT EXECUTE FUNCTION bump_document_catalog_version();
+
+-- Embeddings are list-partitioned by collection (tenant), one partition per collection.
+-- Before partitioning, 'embeddings' was a plain table. It is renamed here and its rows are moved into the
+-- partitioned table at startup (EmbeddingPartitions), since a table cannot be partitioned in place.
+DO '
+BEGIN
+    IF EXISTS (SELECT 1 FROM pg_class WHERE oid = to_regclass(''embeddings'') AND relkind = ''r'') THEN
+        ALTER TABLE embeddings RENAME TO embeddings_legacy;
+        ALTER TABLE embeddings_legacy RENAME CONSTRAINT embeddings_pkey TO embeddings_legacy_pkey;
+        -- Free the index names for the partitioned table; the legacy indexes go with the table after migration
+        ALTER INDEX IF EXISTS embeddings_document_id_idx RENAME TO embeddings_legacy_document_id_idx;
+        ALTER INDEX IF EXISTS embeddings_embedding_hnsw_idx RENAME TO embeddings_legacy_embedding_hnsw_idx;
+    END IF;
+END
+';
+
 CREATE TABLE IF NOT EXISTS embeddings (
-    embedding_id UUID PRIMARY KEY,
+    embedding_id UUID NOT NULL,
+    collection VARCHAR(64) NOT NULL,
+    document_id VARCHAR(255) NOT NULL,
     embedding vector(384),
     text TEXT,
-    metadata JSONB
-);
\ No newline at end of file
+    metadata JSONB,
+    PRIMARY KEY (collection, embedding_id)
+) PARTITION BY LIST (collection);
+
+-- Indexes on the parent are created on every partition (one HNSW graph per collection).
+-- Lookups and deletes by document (retrieval filter, document deletion, orphan sweep)
+CREATE INDEX IF NOT EXISTS embeddings_document_id_idx ON embeddings (document_id);
+
+-- ANN index for the cosine-distance search. HNSW (unlike IVFFlat) needs no re-training after deletes,
+-- and vacuum repairs its graph, so recall does not degrade as documents are removed.
+CREATE INDEX IF NOT EXISTS embeddings_embedding_hnsw_idx ON embeddings USING hnsw (embedding vector_cosine_ops);
+
+-- Partition of the default collection; the others are created on first use.
+-- Autovacuum runs after ~2% of the rows changed instead of the default 20%, so dead tuples from deletes
+-- are cleaned up (and the HNSW index repaired) before they slow down searches.
+CREATE TABLE IF NOT EXISTS embeddings_default PARTITION OF embeddings FOR VALUES IN ('default') WITH (
+    autovacuum_vacuum_scale_factor = 0.02,
+    autovacuum_analyze_scale_factor = 0.02,
+    autovacuum_vacuum_threshold = 1000
+);
+
+-- Chat sessions (only written when docwhisperer.chat.sessions.persist=true)
+CREATE TABLE IF NOT EXISTS chat_session (
+    id VARCHAR(64) PRIMARY KEY,
+    summary TEXT,
+    updated_at TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS chat_turn (
+    id BIGSERIAL PRIMARY KEY,
+    session_id VARCHAR(64) NOT NULL REFERENCES chat_session (id) ON DELETE CASCADE,
+    question TEXT NOT NULL,
+    answer TEXT NOT NULL,
+    created_at TIMESTAMP NOT NULL
+);
+
+CREATE INDEX IF NOT EXISTS chat_turn_session_id_idx ON chat_turn (session_id, id);
+
+-- Precomputed document summaries and suggested questions, generated in the background after ingestion
+CREATE TABLE IF NOT EXISTS document_summary (
+    document_id VARCHAR(255) PRIMARY KEY REFERENCES document (id) ON DELETE CASCADE,
+    summary TEXT NOT NULL,
+    suggested_questions TEXT[] NOT NULL,
+    generated_at TIMESTAMP NOT NULL
+);
+
+-- Unsuccessful summary attempts per document, so the backfill backs off and eventually gives up on it
+CREATE TABLE IF NOT EXISTS document_summary_attempt (
+    document_id VARCHAR(255) PRIMARY KEY REFERENCES document (id) ON DELETE CASCADE,
+    failures INT NOT NULL,
+    last_attempt_at TIMESTAMP NOT NULL
+);
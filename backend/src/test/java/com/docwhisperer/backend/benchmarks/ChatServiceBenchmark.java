@@ -0,0 +1,234 @@
+package com.docwhisperer.backend.benchmarks;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.docwhisperer.backend.llm.GenerationScheduler;
+import com.docwhisperer.backend.observability.PipelineObservations;
+import com.docwhisperer.backend.repositories.ConversationStore;
+import com.docwhisperer.backend.repositories.DocumentSummaryRepository;
+import com.docwhisperer.backend.repositories.EmbeddingPartitions;
+import com.docwhisperer.backend.services.ChatService;
+import com.docwhisperer.backend.services.ConversationService;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures chat request throughput of {@link ChatService#answer} with the LLM, embedding model and
+ * database replaced by in-memory stubs, so that the cost of logging on the request thread is visible.
+ * <p>
+ * Parameters:
+ * <ul>
+ *     <li>{@code appender}: {@code sync} writes on the request thread (the old setup),
+ *     {@code async} hands events to an {@link AsyncAppender} (the setup in {@code logback-spring.xml}).</li>
+ *     <li>{@code logging}: {@code baseline} emits, at INFO, exactly the lines the service logged per request
+ *     before the logging rework (question, diagnostic count, one line with a 50 character preview per retrieved
+ *     chunk, LLM request/response), with the service's own logging off; {@code current} runs the service with
+ *     its current logging at INFO, i.e. one summary line per request.</li>
+ * </ul>
+ * "Before" corresponds to {@code sync/baseline}, "after" to {@code async/current}.
+ * Log output goes to a temporary file so real I/O happens without flooding the console.
+ * </p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class ChatServiceBenchmark {
+
+    @Param({"sync", "async"})
+    public String appender;
+
+    @Param({"baseline", "current"})
+    public String logging;
+
+    private static final String QUESTION = "What does the contract say about termination?";
+    private static final String DOCUMENT_ID = "doc-1";
+
+    private ChatService chatService;
+    private StubJdbcTemplate jdbcTemplate;
+    private org.slf4j.Logger baselineLog;
+    private GenerationScheduler generationScheduler;
+    private Path logFile;
+    private LoggerContext loggerContext;
+
+    @Setup
+    public void setUp() throws IOException {
+        logFile = Files.createTempFile("chat-benchmark", ".log");
+        configureLogging();
+
+        EmbeddingModel embeddingModel = segments -> new Response<>(
+                Collections.nCopies(segments.size(), Embedding.from(new float[384])));
+        ChatLanguageModel chatLanguageModel = messages -> new Response<>(AiMessage.from("Stub answer"));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PipelineObservations observations = new PipelineObservations(ObservationRegistry.NOOP, meterRegistry);
+        // Enough slots and queue for the benchmark threads, so admission control never kicks in
+        generationScheduler = new GenerationScheduler(chatLanguageModel, meterRegistry, 8, 1, 64, 64, Duration.ofSeconds(30));
+
+        jdbcTemplate = new StubJdbcTemplate(5);
+        ConversationService conversationService = new ConversationService(
+                new ConversationStore(jdbcTemplate, 1000, 6, false), generationScheduler, 6, 2000, 0.92);
+
+        chatService = new ChatService(generationScheduler, embeddingModel, jdbcTemplate,
+                new EmbeddingPartitions(jdbcTemplate, 0.1), conversationService,
+                new DocumentSummaryRepository(jdbcTemplate), observations);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        generationScheduler.shutdown();
+        loggerContext.stop();
+        Files.deleteIfExists(logFile);
+    }
+
+    @Benchmark
+    public String answer() throws SQLException {
+        if ("baseline".equals(logging)) {
+            return answerWithBaselineLogging();
+        }
+        return chatService.answer(QUESTION, DOCUMENT_ID);
+    }
+
+    /**
+     * Runs the current pipeline, emitting the INFO lines of the original {@code ChatService.answer} and
+     * {@code searchWithFilter} on the request thread, with the same arguments and per-chunk preview substring.
+     */
+    private String answerWithBaselineLogging() throws SQLException {
+        baselineLog.info("Received question: '{}' for documentId: '{}'", QUESTION, DOCUMENT_ID);
+        baselineLog.info("Diagnostic: Found {} existing embeddings for documentId: {}", jdbcTemplate.rows.size(), DOCUMENT_ID);
+        for (ResultSet row : jdbcTemplate.rows) {
+            String text = row.getString("text");
+            baselineLog.info("Retrieved chunk from documentId: {}, score: {}, text preview: {}...",
+                    row.getString("doc_id"), row.getDouble("score"), text.substring(0, Math.min(50, text.length())));
+        }
+        baselineLog.info("Found {} relevant segments", jdbcTemplate.rows.size());
+        baselineLog.info("Sending request to LLM...");
+        String answer = chatService.answer(QUESTION, DOCUMENT_ID);
+        baselineLog.info("Received response from LLM");
+        return answer;
+    }
+
+    private void configureLogging() throws IOException {
+        loggerContext = (LoggerContext) LoggerFactory.getILoggerFactory();
+        loggerContext.reset();
+
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(loggerContext);
+        encoder.setPattern("%d{yyyy-MM-dd'T'HH:mm:ss.SSSXXX} %5p [%t] %-40.40logger{39} : %m%n");
+        encoder.start();
+
+        OutputStreamAppender<ILoggingEvent> file = new OutputStreamAppender<>();
+        file.setContext(loggerContext);
+        file.setEncoder(encoder);
+        file.setOutputStream(new FileOutputStream(logFile.toFile()));
+        file.start();
+
+        Appender<ILoggingEvent> target = file;
+        if ("async".equals(appender)) {
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(loggerContext);
+            async.setQueueSize(8192);
+            async.setDiscardingThreshold(1638);
+            async.setNeverBlock(true);
+            async.addAppender(file);
+            async.start();
+            target = async;
+        }
+
+        Logger root = loggerContext.getLogger(org.slf4j.Logger.ROOT_LOGGER_NAME);
+        root.setLevel(Level.INFO);
+        root.addAppender(target);
+        // Baseline lines come from their own logger, so the current service lines can be switched off
+        baselineLog = LoggerFactory.getLogger("baseline." + ChatService.class.getName());
+        if ("baseline".equals(logging)) {
+            loggerContext.getLogger("com.docwhisperer.backend").setLevel(Level.WARN);
+        }
+    }
+
+    /**
+     * Answers the count check with a fixed number and the vector search with {@code rows} synthetic chunks,
+     * running the service's own row mapper over them.
+     */
+    static final class StubJdbcTemplate extends JdbcTemplate {
+
+        private final List<ResultSet> rows = new ArrayList<>();
+
+        StubJdbcTemplate(int rowCount) {
+            for (int i = 0; i < rowCount; i++) {
+                rows.add(row(Map.of(
+                        "text", "Chunk " + i + ": either party may terminate this agreement with thirty days notice.",
+                        "score", 0.9 - i * 0.05,
+                        "doc_id", "doc-1",
+                        "doc_name", "contract.pdf",
+                        "page", String.valueOf(i + 1))));
+            }
+        }
+
+        @Override
+        public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+            if (requiredType == Boolean.class) {
+                // No embeddings_legacy table: no migration in progress
+                return requiredType.cast(false);
+            }
+            return requiredType.cast(rows.size());
+        }
+
+        @Override
+        public <T> List<T> query(String sql, RowMapper<T> rowMapper, Object... args) {
+            List<T> results = new ArrayList<>(rows.size());
+            try {
+                for (int i = 0; i < rows.size(); i++) {
+                    results.add(rowMapper.mapRow(rows.get(i), i));
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            return results;
+        }
+
+        private static ResultSet row(Map<String, Object> values) {
+            return (ResultSet) Proxy.newProxyInstance(
+                    ResultSet.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class},
+                    (proxy, method, args) -> switch (method.getName()) {
+                        case "getString" -> (String) values.get((String) args[0]);
+                        case "getDouble" -> ((Number) values.get((String) args[0])).doubleValue();
+                        case "getInt" -> values.get((String) args[0]) instanceof Number n ? n.intValue() : 0;
+                        case "getObject" -> values.get((String) args[0]);
+                        case "wasNull" -> false;
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    });
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.docwhisperer.backend.benchmarks;
+
+import com.docwhisperer.backend.splitting.CharSequenceSplitter;
+import com.docwhisperer.backend.splitting.TextChunk;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.document.DocumentSplitter;
+import dev.langchain4j.data.document.splitter.DocumentSplitters;
+import dev.langchain4j.data.segment.TextSegment;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost of splitting a large extracted document with LangChain4j's
+ * {@code DocumentSplitters.recursive(500, 50)} (the previous ingestion splitter) and with
+ * {@link CharSequenceSplitter} at the same sizes.
+ * <p>
+ * The text is synthetic Tika-like output: sentences of random words, grouped into lines, paragraphs and pages.
+ * Parameter {@code chars} is the text length. Run with {@code -prof gc} to compare allocation per operation as well.
+ * </p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SplitterBenchmark {
+
+    private static final String[] WORDS = {
+            "agreement", "party", "the", "shall", "notice", "termination", "of", "and", "within", "days",
+            "payment", "invoice", "a", "to", "service", "liability", "in", "data", "provider", "customer"};
+
+    @Param({"100000", "2000000"})
+    public int chars;
+
+    private Document document;
+    private String text;
+    private int[] pageStarts;
+    private DocumentSplitter langChainSplitter;
+    private CharSequenceSplitter charSequenceSplitter;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(chars + 1000);
+        int[] pages = new int[chars / 2500 + 2];
+        int pageCount = 0;
+        while (sb.length() < chars) {
+            if (sb.length() >= pageCount * 2500) {
+                pages[pageCount++] = sb.length();
+            }
+            int sentences = 2 + random.nextInt(4);
+            for (int s = 0; s < sentences; s++) {
+                int words = 6 + random.nextInt(14);
+                for (int w = 0; w < words; w++) {
+                    sb.append(w == 0 ? "The" : WORDS[random.nextInt(WORDS.length)]).append(w + 1 < words ? " " : ". ");
+                }
+                sb.append(random.nextInt(3) == 0 ? "\n" : "");
+            }
+            sb.append("\n\n");
+        }
+        text = sb.toString();
+        document = Document.from(text);
+        pageStarts = Arrays.copyOf(pages, pageCount);
+        langChainSplitter = DocumentSplitters.recursive(500, 50);
+        charSequenceSplitter = new CharSequenceSplitter(500, 50, 100);
+    }
+
+    @Benchmark
+    public List<TextSegment> langChain4jRecursive() {
+        return langChainSplitter.split(document);
+    }
+
+    @Benchmark
+    public List<TextChunk> charSequence() {
+        return charSequenceSplitter.split(text);
+    }
+
+    @Benchmark
+    public List<TextChunk> charSequenceByPage() {
+        return charSequenceSplitter.split(text, pageStarts);
+    }
+}
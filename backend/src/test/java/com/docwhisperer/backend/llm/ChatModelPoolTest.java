@@ -0,0 +1,176 @@
+package com.docwhisperer.backend.llm;
+
+import com.sun.net.httpserver.HttpServer;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.ollama.OllamaChatModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Runs the pool against local stub HTTP servers that speak the small subset of the Ollama API the pool uses
+ * ({@code POST /api/chat} and {@code GET /api/tags}).
+ */
+class ChatModelPoolTest {
+
+    private final List<StubOllama> servers = new ArrayList<>();
+    private ChatModelPool pool;
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+        servers.forEach(StubOllama::stop);
+    }
+
+    @Test
+    @DisplayName("Should fail over to another backend when one returns an error")
+    void generate_whenBackendFails_retriesOnAnotherBackend() throws IOException {
+        // Arrange
+        StubOllama broken = start("broken", 500);
+        StubOllama working = start("working", 200);
+        pool = pool(3, broken, working);
+
+        // Act
+        for (int i = 0; i < 4; i++) {
+            String answer = pool.generate(question()).content().text();
+
+            // Assert
+            assertThat(answer).isEqualTo("Hello from working");
+        }
+        assertThat(working.chatRequests.get()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should open the circuit of a backend after repeated failures")
+    void generate_afterRepeatedFailures_opensCircuit() throws IOException {
+        // Arrange
+        StubOllama broken = start("broken", 500);
+        StubOllama working = start("working", 200);
+        pool = pool(1, broken, working);
+
+        // Act
+        for (int i = 0; i < 6; i++) {
+            pool.generate(question());
+        }
+
+        // Assert: the broken backend saw at most failureThreshold (1) requests before being skipped
+        assertThat(broken.chatRequests.get()).isEqualTo(1);
+        assertThat(pool.getBackends().get(0).isCircuitOpen()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should take backends failing the health check out of rotation")
+    void checkHealth_withUnhealthyBackend_routesAroundIt() throws IOException {
+        // Arrange
+        StubOllama down = start("down", 200);
+        down.tagsStatus = 503;
+        StubOllama up = start("up", 200);
+        pool = pool(3, down, up);
+
+        // Act
+        pool.checkHealth();
+        for (int i = 0; i < 4; i++) {
+            pool.generate(question());
+        }
+
+        // Assert
+        assertThat(pool.getBackends().get(0).isHealthy()).isFalse();
+        assertThat(down.chatRequests.get()).isZero();
+        assertThat(up.chatRequests.get()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should throw when no backend can serve the request")
+    void generate_whenAllBackendsFail_throws() throws IOException {
+        // Arrange
+        pool = pool(3, start("a", 500), start("b", 500));
+
+        // Act & Assert
+        assertThatThrownBy(() -> pool.generate(question()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("No LLM backend");
+    }
+
+    private ChatModelPool pool(int failureThreshold, StubOllama... stubs) {
+        List<ChatModelPool.Backend> backends = new ArrayList<>();
+        for (StubOllama stub : stubs) {
+            backends.add(new ChatModelPool.Backend(stub.name, stub.baseUrl(), OllamaChatModel.builder()
+                    .baseUrl(stub.baseUrl().toString())
+                    .modelName("llama3")
+                    .timeout(Duration.ofSeconds(5))
+                    .maxRetries(1)
+                    .build()));
+        }
+        return new ChatModelPool(backends, new SimpleMeterRegistry(), 2, failureThreshold, Duration.ofMinutes(1), Duration.ZERO);
+    }
+
+    private StubOllama start(String name, int chatStatus) throws IOException {
+        StubOllama stub = new StubOllama(name, chatStatus);
+        servers.add(stub);
+        return stub;
+    }
+
+    private static List<ChatMessage> question() {
+        return List.of(UserMessage.from("Hi"));
+    }
+
+    private static final class StubOllama {
+
+        private final String name;
+        private final HttpServer server;
+        private final AtomicInteger chatRequests = new AtomicInteger();
+        private volatile int tagsStatus = 200;
+
+        StubOllama(String name, int chatStatus) throws IOException {
+            this.name = name;
+            this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            server.createContext("/api/chat", exchange -> {
+                chatRequests.incrementAndGet();
+                exchange.getRequestBody().readAllBytes();
+                String body = chatStatus == 200
+                        ? """
+                          {"model":"llama3","created_at":"2024-01-01T00:00:00Z",\
+                          "message":{"role":"assistant","content":"Hello from %s"},\
+                          "done":true,"prompt_eval_count":1,"eval_count":3}""".formatted(name)
+                        : "{\"error\":\"model crashed\"}";
+                respond(exchange, chatStatus, body);
+            });
+            server.createContext("/api/tags", exchange -> respond(exchange, tagsStatus, "{\"models\":[]}"));
+            server.start();
+        }
+
+        URI baseUrl() {
+            return URI.create("http://localhost:" + server.getAddress().getPort());
+        }
+
+        void stop() {
+            server.stop(0);
+        }
+
+        private static void respond(com.sun.net.httpserver.HttpExchange exchange, int status, String body) throws IOException {
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(bytes);
+            }
+        }
+    }
+}
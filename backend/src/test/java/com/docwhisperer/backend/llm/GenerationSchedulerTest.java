@@ -0,0 +1,197 @@
+package com.docwhisperer.backend.llm;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class GenerationSchedulerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final CountDownLatch release2 = new CountDownLatch(1);
+    private final List<String> processed = new CopyOnWriteArrayList<>();
+
+    /**
+     * Stub model: the prompts "block" and "block2" wait until {@link #release} and {@link #release2} are counted down,
+     * every prompt is recorded in order.
+     */
+    private final ChatLanguageModel model = messages -> {
+        String prompt = messages.get(messages.size() - 1).text();
+        CountDownLatch latch = prompt.equals("block") ? release : prompt.equals("block2") ? release2 : null;
+        if (latch != null) {
+            try {
+                latch.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        processed.add(prompt);
+        return new Response<>(AiMessage.from("answer to " + prompt));
+    };
+
+    private GenerationScheduler scheduler;
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        release2.countDown();
+        scheduler.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should run queued interactive requests before queued background requests")
+    void submit_withMixedPriorities_runsInteractiveFirst() throws Exception {
+        // Arrange: two slots, both occupied by blocked requests
+        scheduler = new GenerationScheduler(model, meterRegistry, 2, 1, 10, 10, Duration.ofSeconds(30));
+        CompletableFuture<Response<AiMessage>> blocker = scheduler.submit(GenerationPriority.INTERACTIVE, prompt("block"));
+        CompletableFuture<Response<AiMessage>> blocker2 = scheduler.submit(GenerationPriority.INTERACTIVE, prompt("block2"));
+        awaitInFlight(2);
+
+        // Act: free one slot
+        CompletableFuture<Response<AiMessage>> background = scheduler.submit(GenerationPriority.BACKGROUND, prompt("background"));
+        CompletableFuture<Response<AiMessage>> interactive = scheduler.submit(GenerationPriority.INTERACTIVE, prompt("interactive"));
+        release.countDown();
+        CompletableFuture.allOf(blocker, background, interactive).get(5, TimeUnit.SECONDS);
+        release2.countDown();
+        blocker2.get(5, TimeUnit.SECONDS);
+
+        // Assert
+        assertThat(processed).containsExactly("block", "interactive", "background", "block2");
+        assertThat(interactive.get().content().text()).isEqualTo("answer to interactive");
+    }
+
+    @Test
+    @DisplayName("Should keep the only slot for interactive requests and reject background work")
+    void submit_withSingleSlot_rejectsBackgroundWork() {
+        // Arrange
+        scheduler = new GenerationScheduler(model, meterRegistry, 1, 1, 10, 10, Duration.ofSeconds(30));
+
+        // Act & Assert
+        assertThatThrownBy(() -> scheduler.submit(GenerationPriority.BACKGROUND, prompt("background")))
+                .isInstanceOf(GenerationRejectedException.class);
+        assertThat(scheduler.queueSize(GenerationPriority.BACKGROUND)).isZero();
+        assertThat(meterRegistry.get("docwhisperer.llm.rejected").tag("reason", "no-background-slot").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should run max-in-flight requests on every backend of a pool at the same time")
+    void submit_withPool_runsOneSlotPerBackendInParallel() throws Exception {
+        // Arrange: three backends that block until all three are generating at once
+        CountDownLatch allRunning = new CountDownLatch(3);
+        Set<String> runningOn = ConcurrentHashMap.newKeySet();
+        List<ChatModelPool.Backend> backends = List.of(blockingBackend("a", allRunning, runningOn),
+                blockingBackend("b", allRunning, runningOn), blockingBackend("c", allRunning, runningOn));
+        ChatModelPool pool = new ChatModelPool(backends, meterRegistry, 1, 3, Duration.ofSeconds(30), Duration.ZERO);
+        scheduler = new GenerationScheduler(pool, meterRegistry, 1, 1, 10, 10, Duration.ofSeconds(30));
+
+        // Act: each request is routed once the previous one is running, so routing sees its outstanding count
+        List<CompletableFuture<Response<AiMessage>>> futures = new ArrayList<>();
+        for (String question : List.of("one", "two", "three")) {
+            futures.add(scheduler.submit(GenerationPriority.INTERACTIVE, prompt(question)));
+            awaitRunning(runningOn, futures.size());
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        // Assert: one slot per backend, and all three requests ran concurrently, one on each backend
+        assertThat(scheduler.slots()).isEqualTo(3);
+        assertThat(allRunning.getCount()).isZero();
+        assertThat(runningOn).containsExactlyInAnyOrder("a", "b", "c");
+        pool.close();
+    }
+
+    @Test
+    @DisplayName("Should reject immediately when the queue of the priority class is full")
+    void submit_withFullQueue_rejects() {
+        // Arrange
+        scheduler = new GenerationScheduler(model, meterRegistry, 1, 1, 1, 1, Duration.ofSeconds(30));
+        scheduler.submit(GenerationPriority.INTERACTIVE, prompt("block"));
+        awaitInFlight(1);
+        scheduler.submit(GenerationPriority.INTERACTIVE, prompt("queued"));
+
+        // Act & Assert
+        assertThatThrownBy(() -> scheduler.submit(GenerationPriority.INTERACTIVE, prompt("overflow")))
+                .isInstanceOf(GenerationRejectedException.class);
+        assertThat(meterRegistry.get("docwhisperer.llm.rejected").tag("reason", "queue-full").counter().count())
+                .isEqualTo(1.0);
+    }
+
+    @Test
+    @DisplayName("Should drop requests that waited in the queue longer than the maximum wait")
+    void generate_afterMaxQueueWait_rejects() throws Exception {
+        // Arrange
+        scheduler = new GenerationScheduler(model, meterRegistry, 1, 1, 10, 10, Duration.ofMillis(50));
+        scheduler.submit(GenerationPriority.INTERACTIVE, prompt("block"));
+        awaitInFlight(1);
+        CompletableFuture<Response<AiMessage>> stale = scheduler.submit(GenerationPriority.INTERACTIVE, prompt("stale"));
+
+        // Act
+        Thread.sleep(100);
+        release.countDown();
+
+        // Assert
+        assertThatThrownBy(() -> stale.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(GenerationRejectedException.class);
+        assertThat(processed).containsExactly("block");
+    }
+
+    /**
+     * A backend whose model counts down {@code allRunning} and then waits for the other backends to do the same,
+     * failing the request if they do not run concurrently.
+     */
+    private static ChatModelPool.Backend blockingBackend(String name, CountDownLatch allRunning, Set<String> runningOn) {
+        ChatLanguageModel delegate = messages -> {
+            runningOn.add(name);
+            allRunning.countDown();
+            try {
+                if (!allRunning.await(5, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Backends did not run in parallel");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new Response<>(AiMessage.from("answer from " + name));
+        };
+        return new ChatModelPool.Backend(name, URI.create("http://" + name + ":11434"), delegate);
+    }
+
+    private static List<ChatMessage> prompt(String text) {
+        return List.of(UserMessage.from(text));
+    }
+
+    private static void awaitRunning(Set<String> runningOn, int expected) {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (runningOn.size() < expected && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(runningOn).hasSize(expected);
+    }
+
+    private void awaitInFlight(int expected) {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (scheduler.inFlight() != expected && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        assertThat(scheduler.inFlight()).isEqualTo(expected);
+    }
+}
@@ -0,0 +1,110 @@
+package com.docwhisperer.backend.repositories;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.server.ResponseStatusException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmbeddingPartitionsTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private EmbeddingPartitions partitions;
+
+    @BeforeEach
+    void setUp() {
+        partitions = new EmbeddingPartitions(jdbcTemplate, 0.1);
+    }
+
+    @Test
+    @DisplayName("Should use the default collection when none is given")
+    void requireValidCollection_withNullOrBlank_returnsDefault() {
+        // Act & Assert
+        assertThat(EmbeddingPartitions.requireValidCollection(null)).isEqualTo("default");
+        assertThat(EmbeddingPartitions.requireValidCollection("  ")).isEqualTo("default");
+    }
+
+    @Test
+    @DisplayName("Should accept collection names of lowercase letters, digits and underscores")
+    void requireValidCollection_withValidName_returnsIt() {
+        // Act & Assert
+        assertThat(EmbeddingPartitions.requireValidCollection("tenant_42")).isEqualTo("tenant_42");
+        assertThat(EmbeddingPartitions.requireValidCollection("a".repeat(48))).isEqualTo("a".repeat(48));
+    }
+
+    @Test
+    @DisplayName("Should reject collection names that are not safe in a table name with 400")
+    void requireValidCollection_withUnsafeName_throwsBadRequest() {
+        // Act & Assert
+        for (String name : new String[]{"Acme", "acme-corp", "acme'); DROP TABLE document; --", "a".repeat(49)}) {
+            assertThatThrownBy(() -> EmbeddingPartitions.requireValidCollection(name))
+                    .isInstanceOfSatisfying(ResponseStatusException.class,
+                            e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        }
+    }
+
+    @Test
+    @DisplayName("Should create and attach the partition of a new collection only once")
+    void ensurePartition_withNewCollection_createsAndAttachesOnce() {
+        // Arrange
+        when(jdbcTemplate.queryForObject(contains("pg_inherits"), eq(Boolean.class), eq("embeddings_acme"))).thenReturn(false);
+
+        // Act
+        partitions.ensurePartition("acme");
+        partitions.ensurePartition("acme");
+
+        // Assert
+        verify(jdbcTemplate).execute(startsWith("CREATE TABLE IF NOT EXISTS embeddings_acme (LIKE embeddings"));
+        verify(jdbcTemplate).execute("ALTER TABLE embeddings ATTACH PARTITION embeddings_acme FOR VALUES IN ('acme')");
+        verify(jdbcTemplate, times(1)).queryForObject(contains("pg_inherits"), eq(Boolean.class), eq("embeddings_acme"));
+    }
+
+    @Test
+    @DisplayName("Should move the legacy rows in batches into the default partition, then drop the legacy table")
+    void migrateLegacyTable_movesBatchesThenDrops() {
+        // Arrange
+        when(jdbcTemplate.queryForObject(contains("to_regclass('embeddings_legacy')"), eq(Boolean.class))).thenReturn(true);
+        when(jdbcTemplate.queryForObject(contains("reltuples"), eq(Long.class))).thenReturn(1500L);
+        when(jdbcTemplate.queryForObject(contains("pg_inherits"), eq(Boolean.class), eq("embeddings_default"))).thenReturn(true);
+        when(jdbcTemplate.update(contains("DELETE FROM embeddings_legacy"), eq(1000), eq("default"))).thenReturn(1000, 500);
+        when(jdbcTemplate.queryForObject(eq("SELECT EXISTS (SELECT 1 FROM embeddings_legacy)"), eq(Boolean.class)))
+                .thenReturn(true, false);
+
+        // Act
+        assertThat(partitions.isMigrating()).isTrue();
+        int moved = partitions.migrateLegacyTable();
+
+        // Assert
+        assertThat(moved).isEqualTo(1500);
+        verify(jdbcTemplate).execute("DROP TABLE embeddings_legacy");
+        assertThat(partitions.isMigrating()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should do nothing without a legacy table")
+    void migrateLegacyTable_withoutLegacyTable_doesNothing() {
+        // Arrange
+        when(jdbcTemplate.queryForObject(contains("to_regclass('embeddings_legacy')"), eq(Boolean.class))).thenReturn(false);
+
+        // Act
+        int moved = partitions.migrateLegacyTable();
+
+        // Assert
+        assertThat(moved).isZero();
+        assertThat(partitions.isMigrating()).isFalse();
+        verify(jdbcTemplate, never()).update(anyString(), any(Object[].class));
+        verify(jdbcTemplate, never()).execute(anyString());
+    }
+}
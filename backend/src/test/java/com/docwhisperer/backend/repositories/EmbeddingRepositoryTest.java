@@ -0,0 +1,123 @@
+package com.docwhisperer.backend.repositories;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class EmbeddingRepositoryTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private EmbeddingPartitions partitions;
+
+    @Captor
+    private ArgumentCaptor<String> sqlCaptor;
+
+    @Captor
+    private ArgumentCaptor<PreparedStatementSetter> setterCaptor;
+
+    private EmbeddingRepository repository;
+
+    @BeforeEach
+    void setUp() {
+        repository = new EmbeddingRepository(jdbcTemplate, partitions);
+    }
+
+    @Test
+    @DisplayName("Should only delete embeddings of the given documents in the given collection's partition")
+    void deleteByDocumentIds_scopesToCollection() throws SQLException {
+        // Arrange
+        when(jdbcTemplate.update(sqlCaptor.capture(), setterCaptor.capture())).thenReturn(3);
+        PreparedStatement ps = mock(PreparedStatement.class);
+        Connection connection = mock(Connection.class);
+        Array ids = mock(Array.class);
+        when(ps.getConnection()).thenReturn(connection);
+        when(connection.createArrayOf("text", new Object[]{"doc-1", "doc-2"})).thenReturn(ids);
+
+        // Act
+        int deleted = repository.deleteByDocumentIds("acme", List.of("doc-1", "doc-2"));
+        setterCaptor.getValue().setValues(ps);
+
+        // Assert
+        assertThat(deleted).isEqualTo(3);
+        assertThat(sqlCaptor.getValue()).contains("WHERE collection = ? AND document_id = ANY (?)");
+        verify(ps).setString(1, "acme");
+        verify(ps).setArray(2, ids);
+    }
+
+    @Test
+    @DisplayName("Should not run a statement when there is nothing to delete")
+    void deleteByDocumentIds_withoutIds_doesNothing() {
+        // Act
+        int deleted = repository.deleteByDocumentIds("acme", List.of());
+
+        // Assert
+        assertThat(deleted).isZero();
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    @DisplayName("Should delete orphan batches within the collection's partition")
+    void deleteBatchByDocumentId_scopesToCollection() {
+        // Arrange
+        when(jdbcTemplate.update(contains("WHERE collection = ? AND document_id = ? LIMIT ?"),
+                eq("acme"), eq("doc-1"), eq(500), eq("acme"))).thenReturn(500);
+
+        // Act
+        int deleted = repository.deleteBatchByDocumentId("acme", "doc-1", 500);
+
+        // Assert
+        assertThat(deleted).isEqualTo(500);
+    }
+
+    @Test
+    @DisplayName("Should also read chunks not yet moved out of embeddings_legacy while it is being migrated")
+    void findTextsByDocumentId_duringLegacyMigration_readsLegacyTable() {
+        // Arrange
+        when(partitions.isMigrating()).thenReturn(true);
+        when(jdbcTemplate.queryForList(contains("FROM embeddings_legacy"), eq(String.class),
+                eq("doc-1"), eq("doc-1"), eq("doc-1"))).thenReturn(List.of("First.", "Second."));
+
+        // Act
+        List<String> texts = repository.findTextsByDocumentId("doc-1");
+
+        // Assert
+        assertThat(texts).containsExactly("First.", "Second.");
+    }
+
+    @Test
+    @DisplayName("Should only read the partitioned table once the migration is done")
+    void findTextsByDocumentId_afterMigration_readsPartitionOnly() {
+        // Arrange
+        when(partitions.isMigrating()).thenReturn(false);
+        when(jdbcTemplate.queryForList(sqlCaptor.capture(), eq(String.class), eq("doc-1"), eq("doc-1")))
+                .thenReturn(List.of("First."));
+
+        // Act
+        List<String> texts = repository.findTextsByDocumentId("doc-1");
+
+        // Assert
+        assertThat(texts).containsExactly("First.");
+        assertThat(sqlCaptor.getValue()).doesNotContain("embeddings_legacy");
+    }
+}
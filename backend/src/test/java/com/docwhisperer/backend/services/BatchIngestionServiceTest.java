@@ -0,0 +1,269 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.documents.Document;
+import com.docwhisperer.backend.observability.PipelineObservations;
+import com.docwhisperer.backend.repositories.DocumentRepository;
+import com.docwhisperer.backend.repositories.EmbeddingPartitions;
+import com.docwhisperer.backend.repositories.EmbeddingRepository;
+import com.docwhisperer.backend.splitting.SplitterRegistry;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class BatchIngestionServiceTest {
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    @Mock
+    private EmbeddingPartitions embeddingPartitions;
+
+    @Mock
+    private DocumentRepository documentRepository;
+
+    @Mock
+    private EmbeddingRepository embeddingRepository;
+
+    @Mock
+    private DocumentSummarizer documentSummarizer;
+
+    @Captor
+    private ArgumentCaptor<List<TextSegment>> segmentsCaptor;
+
+    @TempDir
+    private Path tempDir;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+    private BatchIngestionService batchIngestionService;
+
+    @BeforeEach
+    void setUp() {
+        batchIngestionService = service(4);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    @DisplayName("Should embed segments of different files together in shared batches")
+    void ingest_withSeveralFiles_sharesEmbeddingBatches() {
+        // Arrange
+        stubEmbeddings();
+        when(documentRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        List<IngestSource> sources = List.of(text("a.txt", "Alpha"), text("b.txt", "Beta"), text("c.txt", "Gamma"));
+        List<IngestResult> results = new ArrayList<>();
+
+        // Act
+        batchIngestionService.ingest(sources, null, results::add);
+
+        // Assert: 3 one-segment files with a batch size of 2 need only 2 embedding calls
+        verify(embeddingModel, times(2)).embedAll(segmentsCaptor.capture());
+        assertThat(segmentsCaptor.getAllValues()).extracting(List::size).containsExactly(2, 1);
+        assertThat(segmentsCaptor.getAllValues().get(0))
+                .extracting(segment -> segment.metadata().get("documentId"))
+                .doesNotHaveDuplicates();
+        verify(embeddingRepository, times(2)).insertAll(eq("default"), anyList(), anyList());
+        assertThat(results).extracting(IngestResult::status).containsOnly("ingested");
+        assertThat(results).extracting(IngestResult::fileName).containsExactlyInAnyOrder("a.txt", "b.txt", "c.txt");
+        verify(documentSummarizer, times(3)).schedule(anyString());
+        assertThat(sources).allSatisfy(source -> assertThat(source.file()).doesNotExist());
+    }
+
+    @Test
+    @DisplayName("Should report a file that cannot be parsed as failed and ingest the others")
+    void ingest_withUnparseableFile_reportsItAsFailed() {
+        // Arrange
+        stubEmbeddings();
+        when(documentRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        List<IngestSource> sources = List.of(text("empty.txt", ""), text("ok.txt", "Some content"));
+        List<IngestResult> results = new ArrayList<>();
+
+        // Act
+        batchIngestionService.ingest(sources, null, results::add);
+
+        // Assert
+        assertThat(results).hasSize(2);
+        assertThat(results).filteredOn(result -> result.fileName().equals("empty.txt"))
+                .singleElement()
+                .satisfies(result -> {
+                    assertThat(result.status()).isEqualTo("failed");
+                    assertThat(result.error()).isNotBlank();
+                });
+        assertThat(results).filteredOn(result -> result.fileName().equals("ok.txt"))
+                .singleElement()
+                .satisfies(result -> assertThat(result.document().getName()).isEqualTo("ok.txt"));
+    }
+
+    @Test
+    @DisplayName("Should fail the documents of a batch whose embeddings cannot be stored")
+    void ingest_whenStoreFails_failsAffectedDocuments() {
+        // Arrange
+        stubEmbeddings();
+        doThrow(new RuntimeException("connection refused")).when(embeddingRepository).insertAll(anyString(), anyList(), anyList());
+        List<IngestResult> results = new ArrayList<>();
+
+        // Act
+        batchIngestionService.ingest(List.of(text("a.txt", "Alpha")), null, results::add);
+
+        // Assert
+        assertThat(results).singleElement().satisfies(result -> {
+            assertThat(result.status()).isEqualTo("failed");
+            assertThat(result.error()).contains("connection refused");
+        });
+        verify(documentRepository, never()).saveAll(anyList());
+        verify(embeddingRepository).deleteByDocumentIds(eq("default"), argThat(ids -> ids.size() == 1));
+    }
+
+    @Test
+    @DisplayName("Should expand ZIP archives and skip directories and macOS metadata")
+    void expand_withZipArchive_returnsItsFiles() throws IOException {
+        // Arrange
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+            zip.putNextEntry(new ZipEntry("docs/"));
+            zip.putNextEntry(new ZipEntry("docs/report.pdf"));
+            zip.write("pdf".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("__MACOSX/docs/._report.pdf"));
+            zip.write("junk".getBytes(StandardCharsets.UTF_8));
+            zip.putNextEntry(new ZipEntry("notes.docx"));
+            zip.write("docx".getBytes(StandardCharsets.UTF_8));
+        }
+        MockMultipartFile archive = new MockMultipartFile("files", "upload.zip", "application/zip", bytes.toByteArray());
+        MockMultipartFile single = new MockMultipartFile("files", "single.pdf", "application/pdf", "pdf".getBytes(StandardCharsets.UTF_8));
+
+        // Act
+        List<IngestSource> sources = batchIngestionService.expand(List.of(archive, single));
+
+        // Assert
+        assertThat(sources).extracting(IngestSource::name)
+                .containsExactly("docs/report.pdf", "notes.docx", "single.pdf");
+        assertThat(sources.get(0).contentType()).isEqualTo("application/pdf");
+        assertThat(sources.get(0).file()).hasContent("pdf");
+        sources.forEach(IngestSource::delete);
+    }
+
+    @Test
+    @DisplayName("Should reject a batch once too many bytes are queued, and delete its spooled files")
+    void submit_overQueuedSizeLimit_rejectsAndDeletesFiles() {
+        // Arrange: 1 KB may be queued in total
+        IngestSource large = text("large.txt", "x".repeat(2048));
+
+        // Act & Assert
+        assertThatThrownBy(() -> batchIngestionService.submit(List.of(large), null, result -> { }))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("try again later");
+        assertThat(large.file()).doesNotExist();
+    }
+
+    @Test
+    @DisplayName("Should save documents one by one when saving them together fails, failing only the offending one")
+    void ingest_whenSaveAllFails_savesOneByOne() {
+        // Arrange: any save including bad.txt fails
+        stubEmbeddings();
+        when(documentRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<Document> documents = invocation.getArgument(0);
+            if (documents.stream().anyMatch(document -> document.getName().equals("bad.txt"))) {
+                throw new RuntimeException("value too long for type character varying(255)");
+            }
+            return documents;
+        });
+        List<IngestResult> results = new ArrayList<>();
+
+        // Act: a batch size of 2 completes two documents per flush
+        batchIngestionService.ingest(List.of(text("a.txt", "Alpha"), text("bad.txt", "Beta"), text("c.txt", "Gamma")),
+                null, results::add);
+
+        // Assert
+        assertThat(results).filteredOn(result -> result.status().equals("failed"))
+                .singleElement()
+                .satisfies(result -> {
+                    assertThat(result.fileName()).isEqualTo("bad.txt");
+                    assertThat(result.error()).contains("value too long");
+                });
+        assertThat(results).filteredOn(result -> result.status().equals("ingested"))
+                .extracting(IngestResult::fileName)
+                .containsExactlyInAnyOrder("a.txt", "c.txt");
+        verify(embeddingRepository, times(1)).deleteByDocumentIds(anyString(), anyCollection());
+        verify(embeddingRepository).deleteByDocumentIds(eq("default"), argThat(ids -> ids.size() == 1));
+    }
+
+    @Test
+    @DisplayName("Should ingest every file when only one file may be parsed ahead of embedding")
+    void ingest_withParseAheadOfOne_ingestsAllFiles() {
+        // Arrange
+        batchIngestionService = service(1);
+        stubEmbeddings();
+        when(documentRepository.saveAll(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+        List<IngestSource> sources = List.of(text("a.txt", "Alpha"), text("b.txt", "Beta"), text("c.txt", "Gamma"));
+        List<IngestResult> results = new ArrayList<>();
+
+        // Act
+        batchIngestionService.ingest(sources, null, results::add);
+
+        // Assert: files are submitted one at a time, so they complete in order
+        assertThat(results).extracting(IngestResult::fileName).containsExactly("a.txt", "b.txt", "c.txt");
+        assertThat(results).extracting(IngestResult::status).containsOnly("ingested");
+        assertThat(sources).allSatisfy(source -> assertThat(source.file()).doesNotExist());
+    }
+
+    private BatchIngestionService service(int maxParseAhead) {
+        PipelineObservations observations = new PipelineObservations(ObservationRegistry.NOOP, new SimpleMeterRegistry());
+        IngestionPipeline ingestionPipeline = new IngestionPipeline(embeddingModel, embeddingRepository, embeddingPartitions,
+                new SplitterRegistry(500, 50, 100), observations);
+        return new BatchIngestionService(ingestionPipeline, documentRepository, embeddingRepository, documentSummarizer,
+                observations, executor, executor, 2, maxParseAhead, 10, DataSize.ofMegabytes(1), DataSize.ofKilobytes(1));
+    }
+
+    private void stubEmbeddings() {
+        when(embeddingModel.embedAll(anyList())).thenAnswer(invocation -> {
+            List<TextSegment> segments = invocation.getArgument(0);
+            List<Embedding> embeddings = segments.stream().map(segment -> Embedding.from(new float[]{1f, 0f})).toList();
+            return new Response<>(embeddings);
+        });
+    }
+
+    private IngestSource text(String name, String content) {
+        try {
+            Path file = Files.writeString(Files.createTempFile(tempDir, "source-", ".txt"), content);
+            return new IngestSource(name, "text/plain", file, Files.size(file));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -1,11 +1,21 @@
 package com.docwhisperer.backend.services;
 
+import com.docwhisperer.backend.documents.DocumentSummary;
+import com.docwhisperer.backend.documents.RetrievedChunk;
+import com.docwhisperer.backend.llm.GenerationScheduler;
+import com.docwhisperer.backend.observability.PipelineObservations;
+import com.docwhisperer.backend.repositories.ConversationStore;
+import com.docwhisperer.backend.repositories.DocumentSummaryRepository;
+import com.docwhisperer.backend.repositories.EmbeddingPartitions;
 import dev.langchain4j.data.embedding.Embedding;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.embedding.EmbeddingModel;
 import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -18,8 +28,11 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.Collections;
 import java.util.List;
+import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
@@ -38,17 +51,39 @@ class ChatServiceTest {
     @Mock
     private JdbcTemplate jdbcTemplate;
 
+    @Mock
+    private DocumentSummaryRepository documentSummaryRepository;
+
+    @Mock
+    private EmbeddingPartitions embeddingPartitions;
+
     @Captor
     private ArgumentCaptor<String> sqlCaptor;
 
     @Captor
     private ArgumentCaptor<Object[]> paramsCaptor;
 
+    @Captor
+    private ArgumentCaptor<List<ChatMessage>> messagesCaptor;
+
+    private GenerationScheduler generationScheduler;
+
     private ChatService chatService;
 
     @BeforeEach
     void setUp() {
-        chatService = new ChatService(chatLanguageModel, embeddingModel, jdbcTemplate);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PipelineObservations observations = new PipelineObservations(ObservationRegistry.NOOP, meterRegistry);
+        generationScheduler = new GenerationScheduler(chatLanguageModel, meterRegistry, 2, 1, 16, 16, Duration.ofSeconds(30));
+        ConversationService conversationService = new ConversationService(
+                new ConversationStore(jdbcTemplate, 100, 6, false), generationScheduler, 6, 2000, 0.92);
+        chatService = new ChatService(generationScheduler, embeddingModel, jdbcTemplate, embeddingPartitions,
+                conversationService, documentSummaryRepository, observations);
+    }
+
+    @AfterEach
+    void tearDown() {
+        generationScheduler.shutdown();
     }
 
     @Test
@@ -63,6 +98,7 @@ class ChatServiceTest {
         when(jdbcTemplate.queryForObject(
                 contains("SELECT COUNT(*)"),
                 eq(Integer.class),
+                eq("default"),
                 eq(documentId)
         )).thenReturn(5);
 
@@ -74,14 +110,14 @@ class ChatServiceTest {
         // Mock vector search results
         when(jdbcTemplate.query(
                 anyString(),
-                ArgumentMatchers.<RowMapper<String>>any(),
+                ArgumentMatchers.<RowMapper<RetrievedChunk>>any(),
                 any(Object[].class)
-        )).thenReturn(List.of("Segment 1: Java basics", "Segment 2: Advanced topics"));
+        )).thenReturn(List.of(chunk("Segment 1: Java basics"), chunk("Segment 2: Advanced topics")));
 
         // Mock LLM response - LangChain4j 0.30.0 uses Response<AiMessage>
         AiMessage aiMessage = AiMessage.from(expectedResponse);
         Response<AiMessage> llmResponse = new Response<>(aiMessage);
-        when(chatLanguageModel.generate(any(ChatMessage.class), any(ChatMessage.class)))
+        when(chatLanguageModel.generate(anyList()))
                 .thenReturn(llmResponse);
 
         // Act
@@ -90,7 +126,7 @@ class ChatServiceTest {
         // Assert
         assertThat(result).isEqualTo(expectedResponse);
         verify(embeddingModel).embed(question);
-        verify(chatLanguageModel).generate(any(ChatMessage.class), any(ChatMessage.class));
+        verify(chatLanguageModel).generate(anyList());
     }
 
     @Test
@@ -103,6 +139,7 @@ class ChatServiceTest {
         when(jdbcTemplate.queryForObject(
                 contains("SELECT COUNT(*)"),
                 eq(Integer.class),
+                eq("default"),
                 eq(documentId)
         )).thenReturn(0);
 
@@ -112,7 +149,7 @@ class ChatServiceTest {
         // Assert
         assertThat(result).contains("document seems to be empty");
         verify(embeddingModel, never()).embed(anyString());
-        verify(chatLanguageModel, never()).generate(any(ChatMessage.class), any(ChatMessage.class));
+        verify(chatLanguageModel, never()).generate(anyList());
     }
 
     @Test
@@ -125,6 +162,7 @@ class ChatServiceTest {
         when(jdbcTemplate.queryForObject(
                 contains("SELECT COUNT(*)"),
                 eq(Integer.class),
+                eq("default"),
                 eq(documentId)
         )).thenReturn(10);
 
@@ -133,7 +171,7 @@ class ChatServiceTest {
 
         when(jdbcTemplate.query(
                 anyString(),
-                ArgumentMatchers.<RowMapper<String>>any(),
+                ArgumentMatchers.<RowMapper<RetrievedChunk>>any(),
                 any(Object[].class)
         )).thenReturn(Collections.emptyList());
 
@@ -142,7 +180,7 @@ class ChatServiceTest {
 
         // Assert
         assertThat(result).contains("couldn't find any relevant information");
-        verify(chatLanguageModel, never()).generate(any(ChatMessage.class), any(ChatMessage.class));
+        verify(chatLanguageModel, never()).generate(anyList());
     }
 
     @Test
@@ -156,13 +194,13 @@ class ChatServiceTest {
 
         when(jdbcTemplate.query(
                 sqlCaptor.capture(),
-                ArgumentMatchers.<RowMapper<String>>any(),
+                ArgumentMatchers.<RowMapper<RetrievedChunk>>any(),
                 paramsCaptor.capture()
-        )).thenReturn(List.of("Some content"));
+        )).thenReturn(List.of(chunk("Some content")));
 
         AiMessage aiMessage = AiMessage.from("Answer");
         Response<AiMessage> llmResponse = new Response<>(aiMessage);
-        when(chatLanguageModel.generate(any(ChatMessage.class), any(ChatMessage.class)))
+        when(chatLanguageModel.generate(anyList()))
                 .thenReturn(llmResponse);
 
         // Act
@@ -170,10 +208,12 @@ class ChatServiceTest {
 
         // Assert
         String executedSql = sqlCaptor.getValue();
-        assertThat(executedSql).doesNotContain("metadata ->> 'documentId' = ?");
+        assertThat(executedSql).doesNotContain("document_id = ?");
+        assertThat(executedSql).contains("WHERE collection = ?");
+        assertThat(paramsCaptor.getValue()).contains("default");
 
         // Verify no COUNT query was executed (diagnostic check skipped)
-        verify(jdbcTemplate, never()).queryForObject(contains("COUNT"), eq(Integer.class), anyString());
+        verify(jdbcTemplate, never()).queryForObject(contains("COUNT"), eq(Integer.class), anyString(), anyString());
     }
 
     @Test
@@ -186,6 +226,7 @@ class ChatServiceTest {
         when(jdbcTemplate.queryForObject(
                 contains("SELECT COUNT(*)"),
                 eq(Integer.class),
+                eq("default"),
                 eq(documentId)
         )).thenReturn(3);
 
@@ -194,13 +235,13 @@ class ChatServiceTest {
 
         when(jdbcTemplate.query(
                 sqlCaptor.capture(),
-                ArgumentMatchers.<RowMapper<String>>any(),
+                ArgumentMatchers.<RowMapper<RetrievedChunk>>any(),
                 paramsCaptor.capture()
-        )).thenReturn(List.of("Filtered content"));
+        )).thenReturn(List.of(chunk("Filtered content")));
 
         AiMessage aiMessage = AiMessage.from("Filtered answer");
         Response<AiMessage> llmResponse = new Response<>(aiMessage);
-        when(chatLanguageModel.generate(any(ChatMessage.class), any(ChatMessage.class)))
+        when(chatLanguageModel.generate(anyList()))
                 .thenReturn(llmResponse);
 
         // Act
@@ -208,10 +249,82 @@ class ChatServiceTest {
 
         // Assert
         String executedSql = sqlCaptor.getValue();
-        assertThat(executedSql).contains("metadata ->> 'documentId' = ?");
+        assertThat(executedSql).contains("WHERE collection = ?");
+        assertThat(executedSql).contains("document_id = ?");
+        // Exact search over the document's chunks, not a filtered HNSW scan that can miss them
+        assertThat(executedSql).contains("WITH chunks AS MATERIALIZED");
 
         Object[] params = paramsCaptor.getValue();
-        assertThat(params).contains(documentId);
+        assertThat(params).startsWith("default", documentId);
+    }
+
+    @Test
+    @DisplayName("Should count and search only within the given collection")
+    void answer_withCollection_scopesQueriesToCollection() {
+        // Arrange
+        String question = "Specific question?";
+        String documentId = "doc-789";
+
+        when(jdbcTemplate.queryForObject(
+                contains("SELECT COUNT(*) FROM embeddings WHERE collection = ?"),
+                eq(Integer.class),
+                eq("acme"),
+                eq(documentId)
+        )).thenReturn(3);
+
+        float[] mockVector = new float[]{0.1f, 0.2f, 0.3f};
+        when(embeddingModel.embed(question)).thenReturn(new Response<>(Embedding.from(mockVector)));
+
+        when(jdbcTemplate.query(
+                sqlCaptor.capture(),
+                ArgumentMatchers.<RowMapper<RetrievedChunk>>any(),
+                paramsCaptor.capture()
+        )).thenReturn(List.of(chunk("Tenant content")));
+
+        when(chatLanguageModel.generate(anyList())).thenReturn(new Response<>(AiMessage.from("Answer")));
+
+        // Act
+        chatService.answer(question, "acme", documentId, null);
+
+        // Assert: the legacy table only ever holds default-collection rows
+        assertThat(sqlCaptor.getValue()).contains("WHERE collection = ?").doesNotContain("embeddings_legacy");
+        assertThat(paramsCaptor.getValue()).startsWith("acme", documentId);
+        verifyNoInteractions(embeddingPartitions);
+    }
+
+    @Test
+    @DisplayName("Should also read embeddings_legacy for the default collection while it is being migrated")
+    void answer_duringLegacyMigration_readsLegacyTable() {
+        // Arrange
+        String question = "Specific question?";
+        String documentId = "doc-old";
+        when(embeddingPartitions.isMigrating()).thenReturn(true);
+
+        when(jdbcTemplate.queryForObject(
+                contains("embeddings_legacy"),
+                eq(Integer.class),
+                eq("default"),
+                eq(documentId)
+        )).thenReturn(3);
+
+        float[] mockVector = new float[]{0.1f, 0.2f, 0.3f};
+        when(embeddingModel.embed(question)).thenReturn(new Response<>(Embedding.from(mockVector)));
+
+        when(jdbcTemplate.query(
+                sqlCaptor.capture(),
+                ArgumentMatchers.<RowMapper<RetrievedChunk>>any(),
+                paramsCaptor.capture()
+        )).thenReturn(List.of(chunk("Not migrated yet")));
+
+        when(chatLanguageModel.generate(anyList())).thenReturn(new Response<>(AiMessage.from("Answer")));
+
+        // Act
+        String answer = chatService.answer(question, documentId);
+
+        // Assert: answered instead of reporting an empty document
+        assertThat(answer).isEqualTo("Answer");
+        assertThat(sqlCaptor.getValue()).contains("UNION ALL", "FROM embeddings_legacy");
+        assertThat(paramsCaptor.getValue()).startsWith("default", documentId);
     }
 
     @Test
@@ -224,6 +337,7 @@ class ChatServiceTest {
         when(jdbcTemplate.queryForObject(
                 contains("SELECT COUNT(*)"),
                 eq(Integer.class),
+                eq("default"),
                 eq(documentId)
         )).thenReturn(1);
 
@@ -241,11 +355,13 @@ class ChatServiceTest {
         // Arrange
         String question = "What are the topics?";
         String documentId = "doc-multi";
-        List<String> segments = List.of("Topic 1: Introduction", "Topic 2: Methods", "Topic 3: Results");
+        List<RetrievedChunk> segments = List.of(
+                chunk("Topic 1: Introduction"), chunk("Topic 2: Methods"), chunk("Topic 3: Results"));
 
         when(jdbcTemplate.queryForObject(
                 contains("SELECT COUNT(*)"),
                 eq(Integer.class),
+                eq("default"),
                 eq(documentId)
         )).thenReturn(3);
 
@@ -254,24 +370,171 @@ class ChatServiceTest {
 
         when(jdbcTemplate.query(
                 anyString(),
-                ArgumentMatchers.<RowMapper<String>>any(),
+                ArgumentMatchers.<RowMapper<RetrievedChunk>>any(),
                 any(Object[].class)
         )).thenReturn(segments);
 
-        ArgumentCaptor<ChatMessage> messageCaptor = ArgumentCaptor.forClass(ChatMessage.class);
         AiMessage aiMessage = AiMessage.from("Combined answer");
         Response<AiMessage> llmResponse = new Response<>(aiMessage);
-        when(chatLanguageModel.generate(messageCaptor.capture(), any(ChatMessage.class)))
+        when(chatLanguageModel.generate(messagesCaptor.capture()))
                 .thenReturn(llmResponse);
 
         // Act
         chatService.answer(question, documentId);
 
         // Assert
-        ChatMessage systemMessage = messageCaptor.getValue();
+        ChatMessage systemMessage = messagesCaptor.getValue().get(0);
         String systemText = systemMessage.toString();
         assertThat(systemText).contains("Topic 1: Introduction");
         assertThat(systemText).contains("Topic 2: Methods");
         assertThat(systemText).contains("Topic 3: Results");
     }
+
+    @Test
+    @DisplayName("Should include previous turns of the session in the prompt")
+    void answer_withSession_includesHistoryInPrompt() {
+        // Arrange
+        String documentId = "doc-session";
+        when(jdbcTemplate.queryForObject(
+                contains("SELECT COUNT(*)"),
+                eq(Integer.class),
+                eq("default"),
+                eq(documentId)
+        )).thenReturn(3);
+
+        when(embeddingModel.embed("Who signed the contract?"))
+                .thenReturn(new Response<>(Embedding.from(new float[]{1f, 0f})));
+        when(embeddingModel.embed("When does it expire?"))
+                .thenReturn(new Response<>(Embedding.from(new float[]{0f, 1f})));
+
+        when(jdbcTemplate.query(
+                anyString(),
+                ArgumentMatchers.<RowMapper<RetrievedChunk>>any(),
+                any(Object[].class)
+        )).thenReturn(List.of(chunk("Signed by ACME on 2024-01-01, valid for two years")));
+
+        when(chatLanguageModel.generate(messagesCaptor.capture()))
+                .thenReturn(new Response<>(AiMessage.from("ACME signed it.")))
+                .thenReturn(new Response<>(AiMessage.from("In 2026.")));
+
+        // Act
+        ChatAnswer first = chatService.answer("Who signed the contract?", documentId, null);
+        ChatAnswer second = chatService.answer("When does it expire?", documentId, first.sessionId());
+
+        // Assert
+        assertThat(second.sessionId()).isEqualTo(first.sessionId());
+        assertThat(second.answer()).isEqualTo("In 2026.");
+        List<ChatMessage> secondPrompt = messagesCaptor.getAllValues().get(1);
+        assertThat(secondPrompt).hasSize(4);
+        assertThat(secondPrompt.get(1).text()).isEqualTo("Who signed the contract?");
+        assertThat(secondPrompt.get(2).text()).isEqualTo("ACME signed it.");
+        assertThat(secondPrompt.get(3).text()).isEqualTo("When does it expire?");
+    }
+
+    @Test
+    @DisplayName("Should reuse the previous retrieval for a close follow-up question")
+    void answer_withSimilarFollowUp_reusesRetrieval() {
+        // Arrange
+        String documentId = "doc-follow-up";
+        when(jdbcTemplate.queryForObject(
+                contains("SELECT COUNT(*)"),
+                eq(Integer.class),
+                eq("default"),
+                eq(documentId)
+        )).thenReturn(3);
+
+        when(embeddingModel.embed(anyString()))
+                .thenReturn(new Response<>(Embedding.from(new float[]{0.6f, 0.8f})));
+
+        when(jdbcTemplate.query(
+                anyString(),
+                ArgumentMatchers.<RowMapper<RetrievedChunk>>any(),
+                any(Object[].class)
+        )).thenReturn(List.of(chunk("Termination requires 30 days notice")));
+
+        when(chatLanguageModel.generate(anyList()))
+                .thenReturn(new Response<>(AiMessage.from("30 days.")));
+
+        // Act
+        ChatAnswer first = chatService.answer("What is the notice period?", documentId, null);
+        chatService.answer("What is the notice period again?", documentId, first.sessionId());
+
+        // Assert: only the first question ran a vector search
+        verify(jdbcTemplate, times(1)).query(
+                anyString(),
+                ArgumentMatchers.<RowMapper<RetrievedChunk>>any(),
+                any(Object[].class));
+    }
+
+    @Test
+    @DisplayName("Should return one source per document page, best match first")
+    void answer_withChunksFromSeveralPages_returnsSourcesPerPage() {
+        // Arrange
+        String documentId = "doc-sources";
+        when(jdbcTemplate.queryForObject(
+                contains("SELECT COUNT(*)"),
+                eq(Integer.class),
+                eq("default"),
+                eq(documentId)
+        )).thenReturn(3);
+
+        when(embeddingModel.embed(anyString()))
+                .thenReturn(new Response<>(Embedding.from(new float[]{0.1f, 0.2f})));
+
+        when(jdbcTemplate.query(
+                sqlCaptor.capture(),
+                ArgumentMatchers.<RowMapper<RetrievedChunk>>any(),
+                any(Object[].class)
+        )).thenReturn(List.of(
+                new RetrievedChunk("Fees are due monthly", documentId, "contract.pdf", 4, 0.9),
+                new RetrievedChunk("Late fees apply", documentId, "contract.pdf", 4, 0.8),
+                new RetrievedChunk("Fees are listed in Annex B", documentId, "contract.pdf", 7, 0.7)));
+
+        when(chatLanguageModel.generate(anyList()))
+                .thenReturn(new Response<>(AiMessage.from("Monthly.")));
+
+        // Act
+        ChatAnswer answer = chatService.answer("When are fees due?", documentId, null);
+
+        // Assert
+        assertThat(answer.sources()).extracting(SourceReference::page).containsExactly(4, 7);
+        assertThat(answer.sources().get(0)).satisfies(source -> {
+            assertThat(source.documentName()).isEqualTo("contract.pdf");
+            assertThat(source.score()).isEqualTo(0.9);
+            assertThat(source.excerpt()).isEqualTo("Fees are due monthly");
+        });
+        assertThat(sqlCaptor.getValue()).contains("LEFT JOIN document d");
+    }
+
+    @Test
+    @DisplayName("Should answer a summary request from the precomputed summary without calling the LLM")
+    void answer_withSummaryRequestAndStoredSummary_returnsStoredSummary() {
+        // Arrange
+        String documentId = "doc-summary";
+        when(documentSummaryRepository.findByDocumentId("default", documentId)).thenReturn(Optional.of(new DocumentSummary(
+                documentId, "A service agreement between two parties.", List.of("When does it end?"), LocalDateTime.now())));
+
+        // Act
+        ChatAnswer answer = chatService.answer("Can you summarize this document?", documentId, null);
+
+        // Assert
+        assertThat(answer.answer()).isEqualTo("A service agreement between two parties.");
+        assertThat(answer.sources()).isEmpty();
+        verifyNoInteractions(embeddingModel, jdbcTemplate, chatLanguageModel);
+    }
+
+    @Test
+    @DisplayName("Should only treat requests to summarize the whole document as summary requests")
+    void isSummaryRequest_matchesWholeDocumentRequestsOnly() {
+        assertThat(ChatService.isSummaryRequest("Summarize this document")).isTrue();
+        assertThat(ChatService.isSummaryRequest("Give me a short summary of the document, please.")).isTrue();
+        assertThat(ChatService.isSummaryRequest("What is this document about?")).isTrue();
+        assertThat(ChatService.isSummaryRequest("Summarize the key points")).isTrue();
+        assertThat(ChatService.isSummaryRequest("Summarize the payment terms")).isFalse();
+        assertThat(ChatService.isSummaryRequest("What is the summary judgment standard?")).isFalse();
+    }
+
+    private static RetrievedChunk chunk(String text) {
+        return new RetrievedChunk(text, "doc", "doc.pdf", 1, 0.5);
+    }
 }
@@ -0,0 +1,117 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.conversations.ChatSession;
+import com.docwhisperer.backend.conversations.ChatTurn;
+import com.docwhisperer.backend.documents.RetrievedChunk;
+import com.docwhisperer.backend.llm.GenerationScheduler;
+import com.docwhisperer.backend.repositories.ConversationStore;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConversationServiceTest {
+
+    private static final RetrievedChunk CHUNK = new RetrievedChunk("chunk", "doc", "doc.pdf", 1, 0.5);
+
+    @Mock
+    private ChatLanguageModel chatLanguageModel;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private GenerationScheduler generationScheduler;
+    private ConversationStore conversationStore;
+    private ConversationService conversationService;
+
+    @BeforeEach
+    void setUp() {
+        generationScheduler = new GenerationScheduler(chatLanguageModel, new SimpleMeterRegistry(), 2, 1, 16, 16, Duration.ofSeconds(30));
+        conversationStore = new ConversationStore(jdbcTemplate, 2, 2, false);
+        conversationService = new ConversationService(conversationStore, generationScheduler, 2, 100, 0.9);
+    }
+
+    @AfterEach
+    void tearDown() {
+        generationScheduler.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should evict the least recently used session when the store is full")
+    void openSession_beyondCapacity_evictsLeastRecentlyUsed() {
+        // Arrange
+        ChatSession first = conversationService.openSession("first");
+        conversationService.recordTurn(first, "Q1", "A1", "doc", new float[]{1f}, List.of(CHUNK));
+        conversationService.openSession("second");
+        conversationService.openSession("first"); // touch "first" so "second" becomes the eldest
+
+        // Act
+        conversationService.openSession("third");
+
+        // Assert
+        assertThat(conversationStore.size()).isEqualTo(2);
+        assertThat(conversationService.openSession("first").getRecentTurns()).hasSize(1);
+        assertThat(conversationService.openSession("second").getRecentTurns()).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should compact older turns into a summary once the session exceeds the turn limit")
+    void recordTurn_beyondMaxRecentTurns_compactsIntoSummary() {
+        // Arrange
+        when(chatLanguageModel.generate(anyList()))
+                .thenReturn(new Response<>(AiMessage.from("User asked about Q1 and Q2.")));
+        ChatSession session = conversationService.openSession(null);
+
+        // Act
+        for (int i = 1; i <= 3; i++) {
+            conversationService.recordTurn(session, "Q" + i, "A" + i, "doc", new float[]{1f}, List.of(CHUNK));
+        }
+
+        // Assert
+        verify(chatLanguageModel, timeout(2000)).generate(anyList());
+        await(() -> session.getSummary() != null);
+        assertThat(session.getSummary()).isEqualTo("User asked about Q1 and Q2.");
+        assertThat(session.getRecentTurns()).extracting(ChatTurn::question).containsExactly("Q3");
+    }
+
+    @Test
+    @DisplayName("Should only reuse retrieval for a similar question on the same document")
+    void reusableRetrieval_requiresSameDocumentAndSimilarQuestion() {
+        // Arrange
+        ChatSession session = conversationService.openSession(null);
+        conversationService.recordTurn(session, "Q", "A", "doc-1", new float[]{1f, 0f}, List.of(CHUNK));
+
+        // Act & Assert
+        assertThat(conversationService.reusableRetrieval(session, "doc-1", new float[]{0.99f, 0.05f})).contains(List.of(CHUNK));
+        assertThat(conversationService.reusableRetrieval(session, "doc-2", new float[]{1f, 0f})).isEmpty();
+        assertThat(conversationService.reusableRetrieval(session, "doc-1", new float[]{0f, 1f})).isEmpty();
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.documents.Document;
+import com.docwhisperer.backend.observability.PipelineObservations;
+import com.docwhisperer.backend.repositories.DocumentCatalog;
+import com.docwhisperer.backend.repositories.DocumentRepository;
+import com.docwhisperer.backend.repositories.EmbeddingRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentServiceTest {
+
+    @Mock
+    private DocumentRepository documentRepository;
+
+    @Mock
+    private DocumentCatalog documentCatalog;
+
+    @Mock
+    private IngestionPipeline ingestionPipeline;
+
+    @Mock
+    private EmbeddingRepository embeddingRepository;
+
+    @Mock
+    private DocumentSummarizer documentSummarizer;
+
+    private DocumentService documentService;
+
+    @BeforeEach
+    void setUp() {
+        PipelineObservations observations = new PipelineObservations(ObservationRegistry.NOOP, new SimpleMeterRegistry());
+        documentService = new DocumentService(documentRepository, documentCatalog, ingestionPipeline, embeddingRepository,
+                documentSummarizer, observations);
+    }
+
+    @Test
+    @DisplayName("Should return a cursor that continues right after the last document of the page")
+    void listDocuments_withMoreResults_returnsNextCursor() {
+        // Arrange
+        Document first = document("doc-1", LocalDateTime.of(2026, 3, 2, 10, 0));
+        Document second = document("doc-2", LocalDateTime.of(2026, 3, 1, 10, 0));
+        Document third = document("doc-3", LocalDateTime.of(2026, 2, 28, 10, 0));
+        when(documentCatalog.findPage("default", null, "application/pdf", null, 3)).thenReturn(List.of(first, second, third));
+        when(documentCatalog.findPage("default", null, "application/pdf", new DocumentCatalog.Position(second.getUploadedAt(), "doc-2"), 3))
+                .thenReturn(List.of(third));
+
+        // Act
+        DocumentPage page = documentService.listDocuments(null, " ", "application/pdf", null, 2);
+        DocumentPage nextPage = documentService.listDocuments("default", null, "application/pdf", page.nextCursor(), 2);
+
+        // Assert
+        assertThat(page.items()).containsExactly(first, second);
+        assertThat(page.nextCursor()).isNotNull();
+        assertThat(nextPage.items()).containsExactly(third);
+        assertThat(nextPage.nextCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should return no cursor on the last page")
+    void listDocuments_onLastPage_returnsNoCursor() {
+        // Arrange
+        Document only = document("doc-1", LocalDateTime.of(2026, 3, 2, 10, 0));
+        when(documentCatalog.findPage(eq("default"), isNull(), isNull(), isNull(), eq(51))).thenReturn(List.of(only));
+
+        // Act
+        DocumentPage page = documentService.listDocuments(null, null, null, null, 50);
+
+        // Assert
+        assertThat(page.items()).containsExactly(only);
+        assertThat(page.nextCursor()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should reject a malformed cursor")
+    void listDocuments_withMalformedCursor_throwsBadRequest() {
+        // Act & Assert
+        assertThatThrownBy(() -> documentService.listDocuments(null, null, null, "not-a-cursor", 50))
+                .isInstanceOf(ResponseStatusException.class)
+                .hasMessageContaining("Invalid cursor");
+    }
+
+    @Test
+    @DisplayName("Should delete the embeddings and metadata of all given documents of the collection")
+    void deleteDocuments_withSeveralIds_deletesEmbeddingsAndMetadata() {
+        // Arrange
+        List<String> ids = List.of("doc-1", "doc-2");
+
+        // Act
+        documentService.deleteDocuments("acme", ids);
+
+        // Assert: both deletes are scoped to the collection, so ids of other collections are left alone
+        verify(embeddingRepository).deleteByDocumentIds("acme", ids);
+        verify(documentRepository).deleteAllByIdInCollection("acme", ids);
+        verify(documentRepository, never()).deleteAllById(any());
+    }
+
+    @Test
+    @DisplayName("Should delete documents of the default collection if none is given")
+    void deleteDocument_withoutCollection_usesDefaultCollection() {
+        // Act
+        documentService.deleteDocument(null, "doc-1");
+
+        // Assert
+        verify(embeddingRepository).deleteByDocumentIds("default", List.of("doc-1"));
+        verify(documentRepository).deleteAllByIdInCollection("default", List.of("doc-1"));
+    }
+
+    @Test
+    @DisplayName("Should reject an invalid collection name without deleting anything")
+    void deleteDocuments_withInvalidCollection_throwsBadRequest() {
+        // Act & Assert
+        assertThatThrownBy(() -> documentService.deleteDocuments("../other", List.of("doc-1")))
+                .isInstanceOf(ResponseStatusException.class);
+        verifyNoInteractions(embeddingRepository, documentRepository);
+    }
+
+    private static Document document(String id, LocalDateTime uploadedAt) {
+        return new Document(id, id + ".pdf", "application/pdf", 100L, uploadedAt, 1);
+    }
+}
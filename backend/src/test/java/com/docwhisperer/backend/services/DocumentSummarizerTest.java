@@ -0,0 +1,174 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.documents.DocumentSummary;
+import com.docwhisperer.backend.llm.GenerationScheduler;
+import com.docwhisperer.backend.repositories.DocumentRepository;
+import com.docwhisperer.backend.repositories.DocumentSummaryRepository;
+import com.docwhisperer.backend.repositories.EmbeddingRepository;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.chat.ChatLanguageModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DocumentSummarizerTest {
+
+    @Mock
+    private ChatLanguageModel chatLanguageModel;
+
+    @Mock
+    private EmbeddingRepository embeddingRepository;
+
+    @Mock
+    private DocumentSummaryRepository summaryRepository;
+
+    @Mock
+    private DocumentRepository documentRepository;
+
+    @Mock
+    private ExecutorService executor;
+
+    private GenerationScheduler generationScheduler;
+
+    private DocumentSummarizer summarizer;
+
+    @BeforeEach
+    void setUp() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        generationScheduler = new GenerationScheduler(chatLanguageModel, meterRegistry, 2, 1, 16, 16, Duration.ofSeconds(30));
+        // Sections of at most 100 characters, so a few chunks already need a reduce level
+        summarizer = new DocumentSummarizer(embeddingRepository, summaryRepository, documentRepository, generationScheduler, executor,
+                meterRegistry, true, 100, 40, 1, Duration.ZERO, 10, 3, Duration.ofMinutes(30));
+    }
+
+    @AfterEach
+    void tearDown() {
+        generationScheduler.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should summarize sections first, then merge their summaries and suggest questions")
+    void summarize_withLongDocument_mapsThenReduces() {
+        // Arrange: 4 chunks of 60 characters = 4 sections; their 4 summaries of 30 characters fit into 2 sections
+        when(embeddingRepository.findTextsByDocumentId("doc-1")).thenReturn(List.of(
+                "a".repeat(60), "b".repeat(60), "c".repeat(60), "d".repeat(60)));
+        when(chatLanguageModel.generate(anyList())).thenAnswer(invocation -> {
+            List<ChatMessage> messages = invocation.getArgument(0);
+            String instructions = messages.get(0).text();
+            String answer = instructions.startsWith("Suggest") ? "1. When does it end?\n2. Who pays?\n\n- What is excluded?\n4. Extra?"
+                    : instructions.startsWith("Write") ? "Final summary." : "s".repeat(30);
+            return new Response<>(AiMessage.from(answer));
+        });
+        ArgumentCaptor<DocumentSummary> saved = ArgumentCaptor.forClass(DocumentSummary.class);
+
+        // Act
+        Optional<DocumentSummary> summary = summarizer.summarize("doc-1");
+
+        // Assert: 4 section summaries + 2 reduce summaries + final summary + questions
+        verify(chatLanguageModel, times(8)).generate(anyList());
+        verify(summaryRepository).save(saved.capture());
+        assertThat(summary).contains(saved.getValue());
+        assertThat(saved.getValue().summary()).isEqualTo("Final summary.");
+        assertThat(saved.getValue().suggestedQuestions())
+                .containsExactly("When does it end?", "Who pays?", "What is excluded?");
+    }
+
+    @Test
+    @DisplayName("Should summarize a short document with a single call")
+    void summarize_withShortDocument_summarizesDirectly() {
+        // Arrange
+        when(embeddingRepository.findTextsByDocumentId("doc-2")).thenReturn(List.of("Short text."));
+        when(chatLanguageModel.generate(anyList())).thenReturn(new Response<>(AiMessage.from("Short.")));
+
+        // Act
+        summarizer.summarize("doc-2");
+
+        // Assert: final summary + questions only
+        verify(chatLanguageModel, times(2)).generate(anyList());
+        verify(summaryRepository).save(any());
+    }
+
+    @Test
+    @DisplayName("Should queue a document only once while it is pending")
+    void schedule_twice_queuesOnce() {
+        // Act
+        summarizer.schedule("doc-3");
+        summarizer.schedule("doc-3");
+
+        // Assert
+        verify(executor).execute(any());
+        assertThat(summarizer.isPending("doc-3")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should only report a pending summary for the collection of the document")
+    void isPending_withOtherCollection_isFalse() {
+        // Arrange
+        when(documentRepository.existsInCollection("default", "doc-6")).thenReturn(true);
+        when(documentRepository.existsInCollection("acme", "doc-6")).thenReturn(false);
+        summarizer.schedule("doc-6");
+
+        // Act & Assert
+        assertThat(summarizer.isPending("default", "doc-6")).isTrue();
+        assertThat(summarizer.isPending("acme", "doc-6")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should record a failed attempt so the backfill backs off")
+    void schedule_whenSummaryFails_recordsFailure() {
+        // Arrange: run queued tasks right away
+        doAnswer(invocation -> {
+            invocation.<Runnable>getArgument(0).run();
+            return null;
+        }).when(executor).execute(any());
+        when(embeddingRepository.findTextsByDocumentId("doc-4")).thenReturn(List.of("Some text."));
+        when(chatLanguageModel.generate(anyList())).thenThrow(new RuntimeException("model unavailable"));
+
+        // Act
+        summarizer.schedule("doc-4");
+
+        // Assert
+        verify(summaryRepository).recordFailure("doc-4");
+        verify(summaryRepository, never()).save(any());
+        assertThat(summarizer.isPending("doc-4")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should only backfill documents that are due, passing the retry limits")
+    void backfill_queuesDueDocuments() {
+        // Arrange
+        when(summaryRepository.findDocumentIdsWithoutSummary(10, 3, Duration.ofMinutes(30))).thenReturn(List.of("doc-5"));
+
+        // Act
+        summarizer.backfill();
+
+        // Assert
+        verify(executor).execute(any());
+        assertThat(summarizer.isPending("doc-5")).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should pack consecutive texts into sections without exceeding the limit")
+    void pack_splitsAtLimit() {
+        assertThat(DocumentSummarizer.pack(List.of("aaaa", "bbbb", "cccccccccccc", "dd"), 10))
+                .containsExactly("aaaa\n\nbbbb", "cccccccccccc", "dd");
+    }
+}
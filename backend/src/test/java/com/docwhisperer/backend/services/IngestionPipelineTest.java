@@ -0,0 +1,117 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.observability.PipelineObservations;
+import com.docwhisperer.backend.repositories.EmbeddingPartitions;
+import com.docwhisperer.backend.repositories.EmbeddingRepository;
+import com.docwhisperer.backend.splitting.DocumentLayout;
+import com.docwhisperer.backend.splitting.SplitterRegistry;
+import dev.langchain4j.data.document.Document;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.inOrder;
+
+@ExtendWith(MockitoExtension.class)
+class IngestionPipelineTest {
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    @Mock
+    private EmbeddingRepository embeddingRepository;
+
+    @Mock
+    private EmbeddingPartitions embeddingPartitions;
+
+    private IngestionPipeline ingestionPipeline;
+
+    @BeforeEach
+    void setUp() {
+        PipelineObservations observations = new PipelineObservations(ObservationRegistry.NOOP, new SimpleMeterRegistry());
+        ingestionPipeline = new IngestionPipeline(embeddingModel, embeddingRepository, embeddingPartitions,
+                new SplitterRegistry(500, 50, 100), observations);
+    }
+
+    @Test
+    @DisplayName("Should split a PDF by page and tag every chunk with its exact offset and page")
+    void split_withPages_tagsChunksWithPageAndOffset() {
+        // Arrange: three pages of ~800 characters, so chunks of 500 start on different pages
+        StringBuilder text = new StringBuilder();
+        int[] pageStarts = new int[3];
+        for (int page = 0; page < 3; page++) {
+            pageStarts[page] = text.length();
+            for (int sentence = 0; sentence < 20; sentence++) {
+                text.append("Sentence ").append(sentence).append(" of page ").append(page + 1).append(" is here. ");
+            }
+            text.append("\n\n");
+        }
+        ParsedDocument parsed = new ParsedDocument(Document.from(text.toString()),
+                new DocumentLayout(pageStarts, new int[0]), 3, "application/pdf");
+
+        // Act
+        List<TextSegment> segments = ingestionPipeline.split(parsed, "doc-1");
+
+        // Assert
+        assertThat(segments).allSatisfy(segment -> {
+            int offset = Integer.parseInt(segment.metadata().get("offset"));
+            assertThat(text.indexOf(segment.text(), offset)).isEqualTo(offset);
+            // A chunk never spans two pages
+            assertThat(parsed.pageAt(offset + segment.text().length() - 1)).isEqualTo(parsed.pageAt(offset));
+            assertThat(segment.metadata().get("page")).isEqualTo(String.valueOf(parsed.pageAt(offset)));
+            assertThat(segment.metadata().get("documentId")).isEqualTo("doc-1");
+        });
+        assertThat(segments).extracting(segment -> Integer.parseInt(segment.metadata().get("offset"))).isSorted();
+        assertThat(segments).extracting(segment -> segment.metadata().get("page")).contains("1", "2", "3");
+    }
+
+    @Test
+    @DisplayName("Should not tag pages for formats without page boundaries")
+    void parse_withPlainText_hasOnePageAndNoPageTags() throws IOException {
+        // Arrange
+        byte[] content = "Just some text without pages.".getBytes(StandardCharsets.UTF_8);
+
+        // Act
+        ParsedDocument parsed = ingestionPipeline.parse(new ByteArrayInputStream(content));
+        List<TextSegment> segments = ingestionPipeline.split(parsed, "doc-2");
+
+        // Assert
+        assertThat(parsed.pageCount()).isEqualTo(1);
+        assertThat(parsed.layout().pageStarts()).isEmpty();
+        assertThat(segments).singleElement().satisfies(segment -> {
+            assertThat(segment.metadata().get("page")).isNull();
+            assertThat(segment.metadata().get("offset")).isEqualTo(String.valueOf(parsed.text().indexOf("Just")));
+        });
+    }
+
+    @Test
+    @DisplayName("Should create the collection's partition before inserting into it")
+    void persist_createsPartitionBeforeInsert() {
+        // Arrange
+        List<Embedding> embeddings = List.of(Embedding.from(new float[]{0.1f}));
+        List<TextSegment> segments = List.of(TextSegment.from("Some text."));
+
+        // Act
+        ingestionPipeline.persist("acme", embeddings, segments);
+
+        // Assert
+        InOrder inOrder = inOrder(embeddingPartitions, embeddingRepository);
+        inOrder.verify(embeddingPartitions).ensurePartition("acme");
+        inOrder.verify(embeddingRepository).insertAll("acme", embeddings, segments);
+    }
+}
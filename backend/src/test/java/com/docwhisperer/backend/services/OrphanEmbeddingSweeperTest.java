@@ -0,0 +1,106 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.repositories.EmbeddingRepository;
+import com.docwhisperer.backend.repositories.EmbeddingRepository.ScannedDocument;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class OrphanEmbeddingSweeperTest {
+
+    private static final Instant START = Instant.parse("2026-01-01T00:00:00Z");
+
+    private static final ScannedDocument ORPHAN = new ScannedDocument("doc-1", true);
+
+    @Mock
+    private EmbeddingRepository embeddingRepository;
+
+    private OrphanEmbeddingSweeper sweeper;
+
+    @BeforeEach
+    void setUp() {
+        sweeper = new OrphanEmbeddingSweeper(embeddingRepository, new SimpleMeterRegistry(), Duration.ofMinutes(30), 10, 100, 2);
+    }
+
+    @Test
+    @DisplayName("Should not delete orphans seen for the first time")
+    void sweep_withNewOrphan_waitsForGracePeriod() {
+        // Arrange
+        when(embeddingRepository.findCollections()).thenReturn(List.of("default"));
+        when(embeddingRepository.scanDocuments("default", "", 10)).thenReturn(List.of(ORPHAN));
+
+        // Act
+        int deleted = sweeper.sweep(START);
+
+        // Assert
+        assertThat(deleted).isZero();
+        verify(embeddingRepository, never()).deleteBatchByDocumentId(anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should delete orphans in small batches once the grace period has passed")
+    void sweep_afterGracePeriod_deletesInBatches() {
+        // Arrange
+        when(embeddingRepository.findCollections()).thenReturn(List.of("default"));
+        when(embeddingRepository.scanDocuments("default", "", 10)).thenReturn(List.of(ORPHAN));
+        when(embeddingRepository.deleteBatchByDocumentId("default", "doc-1", 2)).thenReturn(2, 2, 1);
+        sweeper.sweep(START);
+
+        // Act
+        int deleted = sweeper.sweep(START.plus(Duration.ofHours(1)));
+
+        // Assert
+        assertThat(deleted).isEqualTo(5);
+        verify(embeddingRepository, times(3)).deleteBatchByDocumentId("default", "doc-1", 2);
+    }
+
+    @Test
+    @DisplayName("Should forget a candidate whose document row appeared in the meantime")
+    void sweep_whenDocumentAppears_forgetsCandidate() {
+        // Arrange: doc-1 is orphaned, then gets its row, then is orphaned again
+        when(embeddingRepository.findCollections()).thenReturn(List.of("default"));
+        when(embeddingRepository.scanDocuments("default", "", 10))
+                .thenReturn(List.of(ORPHAN), List.of(new ScannedDocument("doc-1", false)), List.of(ORPHAN));
+        sweeper.sweep(START);
+        sweeper.sweep(START.plus(Duration.ofHours(1)));
+
+        // Act
+        int deleted = sweeper.sweep(START.plus(Duration.ofHours(2)));
+
+        // Assert: the grace period starts over
+        assertThat(deleted).isZero();
+        verify(embeddingRepository, never()).deleteBatchByDocumentId(anyString(), anyString(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Should continue the scan where the previous sweep stopped, partition by partition")
+    void sweep_withScanLimit_continuesAfterCursor() {
+        // Arrange: two documents per sweep
+        sweeper = new OrphanEmbeddingSweeper(embeddingRepository, new SimpleMeterRegistry(), Duration.ofMinutes(30), 2, 100, 2);
+        when(embeddingRepository.findCollections()).thenReturn(List.of("a", "b"));
+        when(embeddingRepository.scanDocuments("a", "", 2))
+                .thenReturn(List.of(new ScannedDocument("doc-1", false), new ScannedDocument("doc-2", false)));
+        when(embeddingRepository.scanDocuments("a", "doc-2", 2)).thenReturn(List.of(new ScannedDocument("doc-3", false)));
+        when(embeddingRepository.scanDocuments("b", "", 1)).thenReturn(List.of(new ScannedDocument("doc-4", false)));
+        sweeper.sweep(START);
+
+        // Act
+        sweeper.sweep(START.plus(Duration.ofMinutes(10)));
+
+        // Assert: the second sweep finished partition 'a' and moved on to 'b' within the same cycle
+        verify(embeddingRepository, times(1)).findCollections();
+        verify(embeddingRepository).scanDocuments("b", "", 1);
+    }
+}
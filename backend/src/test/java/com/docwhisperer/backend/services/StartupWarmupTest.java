@@ -0,0 +1,105 @@
+package com.docwhisperer.backend.services;
+
+import com.docwhisperer.backend.repositories.EmbeddingRepository;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.output.Response;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.boot.DefaultApplicationArguments;
+import org.springframework.boot.actuate.health.Status;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class StartupWarmupTest {
+
+    @Mock
+    private EmbeddingModel embeddingModel;
+
+    @Mock
+    private EmbeddingRepository embeddingRepository;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private StartupWarmup warmup(boolean enabled) {
+        return new StartupWarmup(embeddingModel, embeddingRepository, meterRegistry, enabled, 2,
+                List.of(), "llama3", "30m", Duration.ofSeconds(5));
+    }
+
+    @Test
+    @DisplayName("Should embed, search and only then report itself ready")
+    void run_embedsAndSearches_thenReportsUp() {
+        // Arrange
+        StartupWarmup warmup = warmup(true);
+        float[] vector = {0.1f, 0.2f};
+        when(embeddingModel.embed(anyString())).thenReturn(Response.from(Embedding.from(vector)));
+        assertThat(warmup.health().getStatus()).isEqualTo(Status.OUT_OF_SERVICE);
+
+        // Act
+        warmup.run(new DefaultApplicationArguments());
+
+        // Assert
+        verify(embeddingModel, times(2)).embedAll(anyList());
+        verify(embeddingRepository).findNearestDocumentIds(vector, 5);
+        assertThat(warmup.health().getStatus()).isEqualTo(Status.UP);
+        assertThat((Map<?, ?>) warmup.health().getDetails().get("steps")).containsOnlyKeys("embed", "search");
+        assertThat(meterRegistry.get("docwhisperer.startup.warmup").tag("step", "embed").tag("outcome", "success")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should report a failed step but still become ready")
+    void run_whenEmbeddingFails_skipsSearchAndReportsUp() {
+        // Arrange
+        StartupWarmup warmup = warmup(true);
+        when(embeddingModel.embed(anyString())).thenThrow(new IllegalStateException("model missing"));
+
+        // Act
+        warmup.run(new DefaultApplicationArguments());
+
+        // Assert
+        verifyNoInteractions(embeddingRepository);
+        assertThat(warmup.health().getStatus()).isEqualTo(Status.UP);
+        assertThat((Map<?, ?>) warmup.health().getDetails().get("steps"))
+                .hasEntrySatisfying("embed", outcome -> assertThat((String) outcome).startsWith("failure"));
+    }
+
+    @Test
+    @DisplayName("Should do nothing and report ready when disabled")
+    void run_whenDisabled_reportsUpWithoutWork() {
+        // Arrange
+        StartupWarmup warmup = warmup(false);
+
+        // Act
+        warmup.run(new DefaultApplicationArguments());
+
+        // Assert
+        verifyNoInteractions(embeddingModel, embeddingRepository);
+        assertThat(warmup.health().getStatus()).isEqualTo(Status.UP);
+    }
+
+    @Test
+    @DisplayName("Should escape the model name and keep-alive in the Ollama request body")
+    void keepAliveBody_withQuotes_isValidJson() throws Exception {
+        // Act
+        String body = StartupWarmup.keepAliveBody("llama3 \"custom\"", "30m");
+
+        // Assert
+        JsonNode json = new ObjectMapper().readTree(body);
+        assertThat(json.get("model").asText()).isEqualTo("llama3 \"custom\"");
+        assertThat(json.get("keep_alive").asText()).isEqualTo("30m");
+    }
+}
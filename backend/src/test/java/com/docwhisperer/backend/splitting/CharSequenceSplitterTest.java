@@ -0,0 +1,136 @@
+package com.docwhisperer.backend.splitting;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class CharSequenceSplitterTest {
+
+    @Test
+    @DisplayName("Should keep chunks within the size limit and report their exact offsets")
+    void split_longText_respectsMaxCharsAndOffsets() {
+        // Arrange
+        String text = "The quick brown fox jumps over the lazy dog. ".repeat(200);
+        CharSequenceSplitter splitter = new CharSequenceSplitter(300, 30, 0);
+
+        // Act
+        List<TextChunk> chunks = splitter.split(text);
+
+        // Assert
+        assertThat(chunks).hasSizeGreaterThan(20);
+        assertThat(chunks).allSatisfy(chunk -> {
+            assertThat(chunk.text()).hasSizeLessThanOrEqualTo(300);
+            assertThat(chunk.text()).isEqualTo(text.substring(chunk.start(), chunk.end()));
+            // Sentence boundaries are preferred over word boundaries
+            assertThat(chunk.text()).endsWith(".");
+        });
+        assertThat(chunks.get(chunks.size() - 1).end()).isEqualTo(text.trim().length());
+    }
+
+    @Test
+    @DisplayName("Should start the overlap at a sentence when there is one in the overlap window")
+    void split_withSentenceInOverlap_startsOverlapAtSentence() {
+        // Arrange
+        String text = "One two three four five six. Seven eight nine ten. Eleven twelve thirteen fourteen fifteen.";
+        CharSequenceSplitter splitter = new CharSequenceSplitter(60, 30, 0);
+
+        // Act
+        List<TextChunk> chunks = splitter.split(text);
+
+        // Assert
+        assertThat(chunks.get(0).text()).isEqualTo("One two three four five six. Seven eight nine ten.");
+        assertThat(chunks.get(1).text()).startsWith("Seven eight nine ten.");
+    }
+
+    @Test
+    @DisplayName("Should overlap consecutive chunks without starting mid-word")
+    void split_withOverlap_startsNextChunkInsidePreviousAtWordBoundary() {
+        // Arrange
+        String text = "alpha beta gamma delta epsilon zeta eta theta iota kappa lambda mu nu xi omicron pi rho sigma";
+        CharSequenceSplitter splitter = new CharSequenceSplitter(40, 15, 0);
+
+        // Act
+        List<TextChunk> chunks = splitter.split(text);
+
+        // Assert
+        for (int i = 1; i < chunks.size(); i++) {
+            TextChunk previous = chunks.get(i - 1);
+            TextChunk chunk = chunks.get(i);
+            assertThat(chunk.start()).isGreaterThan(previous.start()).isLessThan(previous.end());
+            assertThat(text.charAt(chunk.start() - 1)).isWhitespace();
+        }
+    }
+
+    @Test
+    @DisplayName("Should prefer paragraph breaks over sentence breaks")
+    void split_withParagraphs_breaksAtParagraph() {
+        // Arrange
+        String first = "First paragraph sentence one. Sentence two is here.";
+        String second = "Second paragraph. It goes on for a while longer than the limit allows.";
+        String text = first + "\n\n" + second;
+        CharSequenceSplitter splitter = new CharSequenceSplitter(80, 0, 0);
+
+        // Act
+        List<TextChunk> chunks = splitter.split(text);
+
+        // Assert
+        assertThat(chunks.get(0).text()).isEqualTo(first);
+        assertThat(chunks.get(1).text()).startsWith("Second paragraph.");
+    }
+
+    @Test
+    @DisplayName("Should not cross region boundaries and merge regions shorter than the minimum")
+    void split_withBoundaries_keepsRegionsApart() {
+        // Arrange: a short heading region, a body region and a table region
+        String heading = "Heading\n";
+        String body = "Body text of the section that is long enough to stand on its own as a region.\n";
+        String table = "a | b\n1 | 2\n";
+        String text = heading + body + table;
+        int[] boundaries = {heading.length(), heading.length() + body.length()};
+        CharSequenceSplitter splitter = new CharSequenceSplitter(500, 50, 20);
+
+        // Act
+        List<TextChunk> chunks = splitter.split(text, boundaries);
+
+        // Assert: the heading is merged into the body, the table stays separate
+        assertThat(chunks).extracting(TextChunk::text).containsExactly((heading + body).trim(), table.trim());
+    }
+
+    @Test
+    @DisplayName("Should keep a short PDF page on its own instead of merging it into the next page")
+    void split_withShortPage_neverSpansPages() {
+        // Arrange: a page with only a title, then a regular page
+        String title = "Annual Report 2025\n";
+        String page = "The second page has the actual content, long enough for a region of its own.\n";
+        String text = title + page;
+        SplitStrategy byPage = new SplitterRegistry(500, 50, 100).forType(SplitterRegistry.PDF);
+
+        // Act
+        List<TextChunk> chunks = byPage.split(text, new DocumentLayout(new int[]{0, title.length()}, new int[0]));
+
+        // Assert: the title is shorter than min-chars, but stays a chunk of its own page
+        assertThat(chunks).extracting(TextChunk::text).containsExactly(title.trim(), page.trim());
+        assertThat(chunks.get(1).start()).isEqualTo(title.length());
+    }
+
+    @Test
+    @DisplayName("Should cut words that are longer than a chunk")
+    void split_withoutWhitespace_cutsAtMaxChars() {
+        // Act
+        List<TextChunk> chunks = new CharSequenceSplitter(10, 0, 0).split("x".repeat(25));
+
+        // Assert
+        assertThat(chunks).extracting(TextChunk::text).containsExactly("x".repeat(10), "x".repeat(10), "x".repeat(5));
+    }
+
+    @Test
+    @DisplayName("Should reject an overlap that is not smaller than the chunk size")
+    void constructor_withTooLargeOverlap_throws() {
+        assertThatThrownBy(() -> new CharSequenceSplitter(50, 50, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -6,6 +6,7 @@ import { ScrollArea } from "@/components/ui/scroll-area";
 import { ChatMessage } from "./ChatMessage";
 import { Document, Message } from "@/types/document";
 import { cn } from "@/lib/utils";
+import { api } from "@/services/api";
 
 interface ChatInterfaceProps {
   /** The currently selected document context */
@@ -18,7 +19,8 @@ interface ChatInterfaceProps {
   isLoading: boolean;
 }
 
-const suggestedQuestions = [
+/** Used until the document's precomputed suggestions are available */
+const defaultQuestions = [
   "What is the main topic of this document?",
   "Summarize the key points",
   "What are the conclusions?",
@@ -39,9 +41,30 @@ export function ChatInterface({
   isLoading,
 }: ChatInterfaceProps) {
   const [input, setInput] = useState("");
+  const [suggestedQuestions, setSuggestedQuestions] = useState<string[]>(defaultQuestions);
   const scrollAreaRef = useRef<HTMLDivElement>(null);
   const textareaRef = useRef<HTMLTextAreaElement>(null);
 
+  useEffect(() => {
+    // Show the document's precomputed questions (generated in the background after upload), if ready
+    setSuggestedQuestions(defaultQuestions);
+    if (!document) return;
+    let cancelled = false;
+    api
+      .getSummary(document.id)
+      .then((summary) => {
+        if (!cancelled && summary && summary.suggestedQuestions.length > 0) {
+          setSuggestedQuestions(summary.suggestedQuestions);
+        }
+      })
+      .catch(() => {
+        // Keep the default questions
+      });
+    return () => {
+      cancelled = true;
+    };
+  }, [document]);
+
   useEffect(() => {
     // Auto-scroll to bottom on new messages
     if (scrollAreaRef.current) {
@@ -54,10 +54,11 @@ export function ChatMessage({ message }: ChatMessageProps) {
             {message.sources.map((source, index) => (
               <div
                 key={index}
+                title={source.excerpt}
                 className="flex items-center gap-1.5 rounded-md bg-accent px-2.5 py-1.5 text-xs text-accent-foreground"
               >
                 <FileText className="h-3 w-3" />
-                <span>Page {source.page}</span>
+                <span>{source.page != null ? `Page ${source.page}` : source.documentName ?? "Source"}</span>
               </div>
             ))}
           </div>
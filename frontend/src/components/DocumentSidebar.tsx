@@ -16,6 +16,12 @@ interface DocumentSidebarProps {
   onUploadClick: () => void;
   /** Callback to delete a document */
   onDeleteDocument: (id: string) => void;
+  /** Whether the backend has more documents than the loaded pages */
+  hasMore: boolean;
+  /** Whether the next page is being loaded */
+  isLoadingMore: boolean;
+  /** Callback to load the next page of documents */
+  onLoadMore: () => void;
   /** Current search filter text */
   searchQuery: string;
   /** Callback to update search filter */
@@ -26,6 +32,7 @@ interface DocumentSidebarProps {
  * Sidebar Component for Document Management.
  * <p>
  * Displays a list of uploaded documents with search functionality.
+ * Documents are loaded page by page; "Load more" fetches the next page.
  * Allows users to select, upload, and delete documents.
  * </p>
  */
@@ -35,6 +42,9 @@ export function DocumentSidebar({
   onSelectDocument,
   onUploadClick,
   onDeleteDocument,
+  hasMore,
+  isLoadingMore,
+  onLoadMore,
   searchQuery,
   onSearchChange,
 }: DocumentSidebarProps) {
@@ -148,13 +158,24 @@ export function DocumentSidebar({
               </div>
             ))
           )}
+          {hasMore && (
+            <Button
+              variant="ghost"
+              size="sm"
+              className="w-full"
+              onClick={onLoadMore}
+              disabled={isLoadingMore}
+            >
+              {isLoadingMore ? "Loading..." : "Load more"}
+            </Button>
+          )}
         </div>
       </ScrollArea>
 
       {/* Footer Stats */}
       <div className="border-t border-border px-4 py-3">
         <p className="text-xs text-muted-foreground">
-          {documents.length} document{documents.length !== 1 ? "s" : ""} indexed
+          {documents.length}{hasMore ? "+" : ""} document{documents.length !== 1 || hasMore ? "s" : ""} indexed
         </p>
       </div>
     </div>
@@ -12,7 +12,7 @@ import { api } from "@/services/api";
  * This component acts as the primary controller for the application state.
  * It manages:
  * <ul>
- *   <li>The list of documents (fetched from backend)</li>
+ *   <li>The list of documents (fetched from backend page by page)</li>
  *   <li>The currently selected document</li>
  *   <li>The chat history (messages)</li>
  *   <li>Upload modal visibility</li>
@@ -23,6 +23,8 @@ import { api } from "@/services/api";
 const Index = () => {
   // --- State Management ---
   const [documents, setDocuments] = useState<Document[]>([]);
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
+  const [isLoadingMore, setIsLoadingMore] = useState(false);
   const [selectedDocument, setSelectedDocument] = useState<Document | null>(null);
   const [searchQuery, setSearchQuery] = useState("");
   const [uploadModalOpen, setUploadModalOpen] = useState(false);
@@ -38,10 +40,14 @@ const Index = () => {
     loadDocuments();
   }, []);
 
+  /**
+   * Loads the first page of documents, replacing the current list.
+   */
   const loadDocuments = async () => {
     try {
-      const docs = await api.getDocuments();
-      setDocuments(docs);
+      const page = await api.getDocuments();
+      setDocuments(page.items);
+      setNextCursor(page.nextCursor);
     } catch (error) {
       toast({
         title: "Error",
@@ -51,6 +57,30 @@ const Index = () => {
     }
   };
 
+  /**
+   * Appends the next page of documents (the sidebar's "Load more" button).
+   */
+  const loadMoreDocuments = useCallback(async () => {
+    if (!nextCursor || isLoadingMore) return;
+    setIsLoadingMore(true);
+    try {
+      const page = await api.getDocuments({ cursor: nextCursor });
+      setDocuments((prev) => [
+        ...prev,
+        ...page.items.filter((doc) => !prev.some((existing) => existing.id === doc.id)),
+      ]);
+      setNextCursor(page.nextCursor);
+    } catch (error) {
+      toast({
+        title: "Error",
+        description: "Failed to load more documents",
+        variant: "destructive",
+      });
+    } finally {
+      setIsLoadingMore(false);
+    }
+  }, [nextCursor, isLoadingMore, toast]);
+
   /**
    * Handles document selection from the sidebar.
    * Resets the chat history when a new document is selected.
@@ -133,13 +163,14 @@ const Index = () => {
     setIsLoading(true);
 
     try {
-      const answer = await api.chat(content, selectedDocument?.id);
+      const reply = await api.chat(content, selectedDocument?.id);
       
       const aiMessage: Message = {
         id: `msg-${Date.now()}-ai`,
         role: "assistant",
-        content: answer,
+        content: reply.answer,
         timestamp: new Date(),
+        sources: reply.sources,
       };
       setMessages((prev) => [...prev, aiMessage]);
     } catch (error) {
@@ -162,6 +193,9 @@ const Index = () => {
         onSelectDocument={handleSelectDocument}
         onUploadClick={() => setUploadModalOpen(true)}
         onDeleteDocument={handleDeleteDocument}
+        hasMore={nextCursor !== null}
+        isLoadingMore={isLoadingMore}
+        onLoadMore={loadMoreDocuments}
         searchQuery={searchQuery}
         onSearchChange={setSearchQuery}
       />
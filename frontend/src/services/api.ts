@@ -1,7 +1,13 @@
-import { Document } from "@/types/document";
+import { ChatReply, Document, DocumentPage, DocumentQuery, DocumentSummary } from "@/types/document";
 
 const API_BASE = "/api";
 
+/**
+ * Server-side chat session ids, one conversation per document (key "" = all documents).
+ * Sending the id back lets the backend keep conversation memory between questions.
+ */
+const chatSessions = new Map<string, string>();
+
 /**
  * Helper to transform raw API responses into typed objects.
  * Specifically converts date strings back to Date objects.
@@ -16,7 +22,7 @@ const transformDocument = (doc: any): Document => ({
  * <p>
  * This object contains all the methods required to communicate with the Spring Boot backend:
  * <ul>
- *   <li>Document Management (List, Upload, Delete)</li>
+ *   <li>Document Management (List, Upload, Delete, Summary)</li>
  *   <li>Chat Interaction (Send Question)</li>
  * </ul>
  * All methods return Promises and throw Errors on failure.
@@ -26,15 +32,26 @@ export const api = {
   // --- Document Operations ---
 
   /**
-   * Fetches the list of all uploaded documents.
-   * GET /api/documents
-   * @returns Promise<Document[]> List of documents
+   * Fetches one page of uploaded documents, newest first.
+   * GET /api/documents?namePrefix=&type=&cursor=&limit=
+   * <p>
+   * The backend answers unchanged listings with 304 via ETag; the browser cache
+   * revalidates automatically, so repeated sidebar refreshes are cheap.
+   * </p>
+   * @param params Optional filters, page size and the cursor of the previous page
+   * @returns Promise<DocumentPage> The documents and the cursor of the next page (null on the last page)
    */
-  getDocuments: async (): Promise<Document[]> => {
-    const response = await fetch(`${API_BASE}/documents`);
+  getDocuments: async (params: DocumentQuery = {}): Promise<DocumentPage> => {
+    const query = new URLSearchParams();
+    if (params.namePrefix) query.set("namePrefix", params.namePrefix);
+    if (params.type) query.set("type", params.type);
+    if (params.cursor) query.set("cursor", params.cursor);
+    query.set("limit", String(params.limit ?? 100));
+
+    const response = await fetch(`${API_BASE}/documents?${query}`);
     if (!response.ok) throw new Error("Failed to fetch documents");
     const data = await response.json();
-    return data.map(transformDocument);
+    return { items: data.items.map(transformDocument), nextCursor: data.nextCursor };
   },
 
   /**
@@ -72,6 +89,19 @@ export const api = {
     if (!response.ok) throw new Error("Failed to delete document");
   },
 
+  /**
+   * Fetches the precomputed summary and suggested questions of a document.
+   * GET /api/documents/:id/summary
+   * @param id The UUID of the document
+   * @returns Promise<DocumentSummary | null> The summary, or null while it is being generated or if there is none
+   */
+  getSummary: async (id: string): Promise<DocumentSummary | null> => {
+    const response = await fetch(`${API_BASE}/documents/${id}/summary`);
+    if (response.status === 202 || response.status === 404) return null;
+    if (!response.ok) throw new Error("Failed to fetch document summary");
+    return response.json();
+  },
+
   // --- Chat Operations ---
 
   /**
@@ -79,23 +109,25 @@ export const api = {
    * POST /api/chat
    * <p>
    * The backend uses RAG to find relevant context from the uploaded documents
-   * and generates an answer using the LLM.
+   * and generates an answer using the LLM. The conversation is continued via the
+   * "sessionId" returned by the backend, so follow-up questions keep their context.
    * </p>
    * @param question The user's question string
    * @param documentId The ID of the document to query (optional context)
-   * @returns Promise<string> The plain text answer from the AI
+   * @returns Promise<ChatReply> The plain text answer from the AI and the document pages it was based on
    */
-  chat: async (question: string, documentId?: string): Promise<string> => {
+  chat: async (question: string, documentId?: string): Promise<ChatReply> => {
     const response = await fetch(`${API_BASE}/chat`, {
       method: "POST",
       headers: {
         "Content-Type": "application/json",
       },
-      body: JSON.stringify({ question, documentId }),
+      body: JSON.stringify({ question, documentId, sessionId: chatSessions.get(documentId ?? "") }),
     });
 
     if (!response.ok) throw new Error("Failed to send message");
     const data = await response.json();
-    return data.answer;
+    if (data.sessionId) chatSessions.set(documentId ?? "", data.sessionId);
+    return { answer: data.answer, sources: data.sources ?? [] };
   },
 };
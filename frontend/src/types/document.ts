@@ -20,6 +20,30 @@ export interface Document {
   pageCount?: number;
 }
 
+/**
+ * One page of the document listing returned by GET /api/documents.
+ */
+export interface DocumentPage {
+  /** The documents of this page, newest first */
+  items: Document[];
+  /** Cursor for the next page, or null if this is the last page */
+  nextCursor: string | null;
+}
+
+/**
+ * Filters and paging options for the document listing.
+ */
+export interface DocumentQuery {
+  /** Only documents whose name starts with this */
+  namePrefix?: string;
+  /** Only documents of this MIME type */
+  type?: string;
+  /** nextCursor of the previous page */
+  cursor?: string;
+  /** Page size (default 100, at most 200) */
+  limit?: number;
+}
+
 /**
  * Represents a single message in a chat conversation.
  * <p>
@@ -39,10 +63,40 @@ export interface Message {
    * Optional citations/sources used by the AI to generate the answer.
    * Useful for RAG (Retrieval-Augmented Generation) transparency.
    */
-  sources?: {
-    page: number;
-    excerpt: string;
-  }[];
+  sources?: Source[];
+}
+
+/**
+ * A document page an answer was based on, as returned by POST /api/chat.
+ */
+export interface Source {
+  documentId: string;
+  documentName: string | null;
+  /** 1-based page, or null for formats without pages (e.g. DOCX) */
+  page: number | null;
+  /** Cosine similarity of the best matching chunk on this page */
+  score: number;
+  /** Beginning of the best matching chunk */
+  excerpt: string;
+}
+
+/**
+ * The answer of POST /api/chat.
+ */
+export interface ChatReply {
+  answer: string;
+  sources: Source[];
+}
+
+/**
+ * The precomputed summary of a document, as returned by GET /api/documents/:id/summary.
+ */
+export interface DocumentSummary {
+  documentId: string;
+  summary: string;
+  /** Questions to start a conversation with */
+  suggestedQuestions: string[];
+  generatedAt: string;
 }
 
 /**